@@ -0,0 +1,250 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// steps many boards of one size in lockstep, for training and evaluating
+// bots. The boards live in flat arrays rather than one object each: every
+// board's cells are a slice of one byte array, laid out and flagged as
+// PackedBoard lays out a single board, and every board's station, powered
+// count and solved flag sit at its index in arrays of their own. A step
+// takes one action for every board and splits the boards across a
+// ForkJoinPool
+class BatchEnv {
+  // the action that leaves a board as it is
+  static final int NONE = Integer.MIN_VALUE;
+  // the cells a task steps before splitting no further, as in ParallelMst
+  static final int THRESHOLD = 1 << 14;
+
+  ForkJoinPool pool;
+  int count;
+  int width;
+  int height;
+  int size;
+  // the cells of board b are cells[b * size] to cells[(b + 1) * size - 1]
+  byte[] cells;
+  // the cell of every board's station, within the board
+  int[] station;
+  int[] powered;
+  boolean[] solved;
+
+  // makes the given number of empty boards of the given size; throws if
+  // their cells would not fit in one array
+  BatchEnv(ForkJoinPool pool, int count, int width, int height) {
+    if (count < 0 || width <= 0 || height <= 0
+        || (long) count * width * height > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("cannot hold " + count + " boards of " + width + "x"
+          + height + " in one array");
+    }
+    this.pool = pool;
+    this.count = count;
+    this.width = width;
+    this.height = height;
+    this.size = width * height;
+    this.cells = new byte[count * this.size];
+    this.station = new int[count];
+    this.powered = new int[count];
+    this.solved = new boolean[count];
+  }
+
+  // returns the action that rotates the given cell clockwise
+  static int rotate(int cell) {
+    return cell;
+  }
+
+  // returns the action that moves the station one cell in the given Board
+  // direction, if both pieces are wired towards each other
+  static int move(int dir) {
+    return -dir;
+  }
+
+  // Effect: fills board b with the puzzle the given generator makes from
+  // Random(seed + b), scrambled by the same Random, with the station in the
+  // top left corner, and powers every board
+  void reset(PuzzleGenerator generator, long seed) {
+    PackedBoard scratch = new PackedBoard(this.width, this.height);
+    for (int b = 0; b < this.count; b++) {
+      Random r = new Random(seed + b);
+      Arrays.fill(scratch.cells, (byte) 0);
+      generator.generate(scratch, r);
+      scratch.randomize(r);
+      this.load(b, scratch, 0);
+    }
+    this.step(null);
+  }
+
+  // Effect: copies the connections of the given board into board b, with
+  // the station on the given cell; the power is worked out on the next step
+  void load(int b, Board board, int station) {
+    int start = b * this.size;
+    for (int cell = 0; cell < this.size; cell++) {
+      this.cells[start + cell] = (byte) board.connections(cell);
+    }
+    this.cells[start + station] |= PackedBoard.STATION;
+    this.station[b] = station;
+  }
+
+  // Effect: applies the given action to every board, by board index, and
+  // updates their powered counts and solved flags; a null array of actions
+  // only powers every board from scratch. Returns the boards now solved
+  int step(int[] actions) {
+    int grain = Math.max(1, THRESHOLD / this.size);
+    this.pool.invoke(new BatchStep(this, actions, grain, 0, this.count));
+    int solved = 0;
+    for (int b = 0; b < this.count; b++) {
+      if (this.solved[b]) {
+        solved++;
+      }
+    }
+    return solved;
+  }
+
+  // Effect: applies the given action to board b, using the given queue for
+  // any flood it needs
+  void apply(int b, int action, int[] queue) {
+    int start = b * this.size;
+    if (action >= 0 && action < this.size) {
+      int at = start + action;
+      int bits = this.cells[at];
+      int mask = Board.rotate(bits & 0xF);
+      this.cells[at] = (byte) ((bits & ~0xF) | mask);
+      // an unpowered piece only matters if it now reaches a powered one
+      if ((bits & PackedBoard.POWERED) != 0 || this.reachesPower(start, action, mask)) {
+        this.flood(b, queue);
+      }
+    }
+    else if (action < 0 && action >= -Board.LEFT && Integer.bitCount(-action) == 1) {
+      // the station stays inside its powered tree, so nothing else changes
+      int from = this.station[b];
+      int next = this.neighbor(from, -action);
+      if ((this.cells[start + from] & -action) != 0 && next != -1
+          && (this.cells[start + next] & Board.opposite(-action)) != 0) {
+        this.cells[start + from] &= ~PackedBoard.STATION;
+        this.cells[start + next] |= PackedBoard.STATION;
+        this.station[b] = next;
+      }
+    }
+  }
+
+  // returns whether the given cell, wired as the given mask, meets a
+  // powered neighbor wired back to it, on the board starting at start
+  boolean reachesPower(int start, int cell, int mask) {
+    for (int dir : Board.DIRECTIONS) {
+      int next = (mask & dir) != 0 ? this.neighbor(cell, dir) : -1;
+      if (next != -1) {
+        int bits = this.cells[start + next];
+        if ((bits & PackedBoard.POWERED) != 0 && (bits & Board.opposite(dir)) != 0) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  // Effect: powers the cells of board b connected to its station, and only
+  // those, and updates its powered count and solved flag
+  void flood(int b, int[] queue) {
+    byte[] cells = this.cells;
+    int start = b * this.size;
+    int height = this.height;
+    int last = this.size - height;
+    for (int i = start; i < start + this.size; i++) {
+      cells[i] &= ~PackedBoard.POWERED;
+    }
+    int head = 0;
+    int tail = 0;
+    queue[tail++] = this.station[b];
+    cells[start + this.station[b]] |= PackedBoard.POWERED;
+    while (head < tail) {
+      int from = queue[head++];
+      int mask = cells[start + from];
+      int row = from % height;
+      if ((mask & Board.TOP) != 0 && row != 0) {
+        tail = this.visit(start, from - 1, Board.BOTTOM, queue, tail);
+      }
+      if ((mask & Board.RIGHT) != 0 && from < last) {
+        tail = this.visit(start, from + height, Board.LEFT, queue, tail);
+      }
+      if ((mask & Board.BOTTOM) != 0 && row != height - 1) {
+        tail = this.visit(start, from + 1, Board.TOP, queue, tail);
+      }
+      if ((mask & Board.LEFT) != 0 && from >= height) {
+        tail = this.visit(start, from - height, Board.RIGHT, queue, tail);
+      }
+    }
+    this.powered[b] = tail;
+    this.solved[b] = tail == this.size;
+  }
+
+  // Effect: powers and queues the given cell if it is unpowered and wired
+  // back in the given direction; returns the new end of the queue
+  int visit(int start, int cell, int back, int[] queue, int tail) {
+    int bits = this.cells[start + cell];
+    if ((bits & back) != 0 && (bits & PackedBoard.POWERED) == 0) {
+      this.cells[start + cell] = (byte) (bits | PackedBoard.POWERED);
+      queue[tail++] = cell;
+    }
+    return tail;
+  }
+
+  // returns the cell next to the given one in the given direction, or -1
+  // past the edge of the board
+  int neighbor(int cell, int dir) {
+    int row = cell % this.height;
+    if (dir == Board.TOP) {
+      return row == 0 ? -1 : cell - 1;
+    }
+    else if (dir == Board.BOTTOM) {
+      return row == this.height - 1 ? -1 : cell + 1;
+    }
+    else if (dir == Board.LEFT) {
+      return cell < this.height ? -1 : cell - this.height;
+    }
+    else {
+      return cell >= this.size - this.height ? -1 : cell + this.height;
+    }
+  }
+
+  // returns a copy of board b
+  PackedBoard board(int b) {
+    PackedBoard board = new PackedBoard(this.width, this.height);
+    System.arraycopy(this.cells, b * this.size, board.cells, 0, this.size);
+    return board;
+  }
+}
+
+// steps the boards in [lo, hi) of a BatchEnv
+@SuppressWarnings("serial")
+class BatchStep extends RecursiveAction {
+  BatchEnv env;
+  int[] actions;
+  int grain;
+  int lo;
+  int hi;
+
+  BatchStep(BatchEnv env, int[] actions, int grain, int lo, int hi) {
+    this.env = env;
+    this.actions = actions;
+    this.grain = grain;
+    this.lo = lo;
+    this.hi = hi;
+  }
+
+  protected void compute() {
+    if (this.hi - this.lo > this.grain) {
+      int mid = (this.lo + this.hi) >>> 1;
+      invokeAll(new BatchStep(this.env, this.actions, this.grain, this.lo, mid),
+          new BatchStep(this.env, this.actions, this.grain, mid, this.hi));
+      return;
+    }
+    int[] queue = new int[this.env.size];
+    for (int b = this.lo; b < this.hi; b++) {
+      if (this.actions == null) {
+        this.env.flood(b, queue);
+      }
+      else if (this.actions[b] != BatchEnv.NONE) {
+        this.env.apply(b, this.actions[b], queue);
+      }
+    }
+  }
+}
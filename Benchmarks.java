@@ -0,0 +1,446 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// rough wall-clock benchmarks of the game's heavier pieces; run with the
+// name of a benchmark, e.g. "java Benchmarks mst"
+class Benchmarks {
+  public static void main(String[] args) {
+    String which = args.length > 0 ? args[0] : "all";
+    if (which.equals("mst") || which.equals("all")) {
+      mst();
+    }
+    if (which.equals("generators") || which.equals("all")) {
+      generators();
+    }
+    if (which.equals("solver") || which.equals("all")) {
+      solver();
+    }
+    if (which.equals("parallel-solver") || which.equals("all")) {
+      parallelSolver();
+    }
+    if (which.equals("rater") || which.equals("all")) {
+      rater();
+    }
+    if (which.equals("hints") || which.equals("all")) {
+      hints();
+    }
+    if (which.equals("save") || which.equals("all")) {
+      save();
+    }
+    if (which.equals("archive") || which.equals("all")) {
+      archive();
+    }
+    if (which.equals("engine") || which.equals("all")) {
+      engine();
+    }
+    if (which.equals("server") || which.equals("all")) {
+      server();
+    }
+    if (which.equals("batch") || which.equals("all")) {
+      batch();
+    }
+    if (which.equals("win") || which.equals("all")) {
+      win();
+    }
+  }
+
+  // returns the best time in milliseconds of the given number of runs
+  static double best(int runs, Runnable task) {
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < runs; i++) {
+      long start = System.nanoTime();
+      task.run();
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best / 1e6;
+  }
+
+  // compares the sequential Kruskal pipeline with the parallel Boruvka
+  // generator as boards grow
+  static void mst() {
+    ParallelMst parallel = new ParallelMst(ForkJoinPool.commonPool());
+    System.out.println("spanning tree generation, "
+        + ForkJoinPool.commonPool().getParallelism() + " workers");
+    System.out.println("size        kruskal ms  parallel ms  speedup");
+    for (int side : new int[] {250, 500, 1000, 2000, 4000}) {
+      int runs = side >= 2000 ? 2 : 5;
+      double kruskal = best(runs, () -> PackedEdges.kruskalBoard(
+          new PackedBoard(side, side), new Random(side), LightEmAll.MAX_WEIGHT));
+      double boruvka = best(runs, () -> parallel.generate(new PackedBoard(side, side), side));
+      System.out.printf("%-11s %10.1f %12.1f %8.2fx%n", side + "x" + side,
+          kruskal, boruvka, kruskal / boruvka);
+    }
+  }
+
+  // returns the bytes allocated so far by the calling thread, or -1 if the
+  // JVM cannot tell
+  static long allocated() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) bean)
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+
+  // compares the throughput and the memory allocated by every puzzle
+  // generator; Boruvka's memory only counts the calling thread's share
+  static void generators() {
+    String[] names = {"kruskal", "boruvka", "wilson", "prim", "backtracker"};
+    PuzzleGenerator[] generators = {new KruskalGenerator(),
+        new BoruvkaGenerator(ForkJoinPool.commonPool()), new WilsonGenerator(),
+        new PrimGenerator(), new BacktrackerGenerator()};
+    System.out.println("generator    size        ms     Mcells/s  alloc MB");
+    for (int side : new int[] {500, 1000, 2000}) {
+      for (int i = 0; i < generators.length; i++) {
+        PuzzleGenerator generator = generators[i];
+        double ms = best(3, () -> generator.generate(new PackedBoard(side, side),
+            new Random(side)));
+        long before = allocated();
+        generator.generate(new PackedBoard(side, side), new Random(side));
+        long bytes = allocated() - before;
+        System.out.printf("%-12s %-10s %7.1f %10.2f %9.1f%n", names[i], side + "x" + side,
+            ms, side * (double) side / ms / 1000, bytes / 1e6);
+      }
+    }
+  }
+
+  // times the auto-solver on scrambled Kruskal boards, with how much guessing
+  // each needed
+  static void solver() {
+    System.out.println("size        ms      branches  backtracks  depth  solved");
+    for (int side : new int[] {50, 100, 250, 500}) {
+      PackedBoard board = new PackedBoard(side, side);
+      Random r = new Random(side);
+      new KruskalGenerator().generate(board, r);
+      board.randomize(r);
+      PuzzleSolver solver = new PuzzleSolver(board);
+      boolean[] solved = new boolean[1];
+      double ms = best(3, () -> solved[0] = solver.solve());
+      System.out.printf("%-11s %7.1f %9d %11d %6d  %b%n", side + "x" + side, ms,
+          solver.branches, solver.backtracks, solver.maxDepth, solved[0]);
+    }
+  }
+
+  // compares the sequential solver with the parallel one, both solving
+  // regions separately and searching the whole board split into tasks
+  static void parallelSolver() {
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    System.out.println("parallel solver, " + pool.getParallelism() + " workers");
+    System.out.println("size        sequential ms  regions ms  split ms");
+    for (int side : new int[] {100, 250, 500}) {
+      PackedBoard board = new PackedBoard(side, side);
+      Random r = new Random(side);
+      new KruskalGenerator().generate(board, r);
+      board.randomize(r);
+      PuzzleSolver sequential = new PuzzleSolver(board);
+      ParallelSolver parallel = new ParallelSolver(pool, board);
+      double seq = best(3, () -> sequential.solve());
+      double regions = best(3, () -> parallel.solve());
+      double split = best(3, () -> {
+        if (parallel.prepare()) {
+          parallel.searchAll();
+        }
+      });
+      System.out.printf("%-11s %13.1f %11.1f %9.1f%n", side + "x" + side, seq, regions, split);
+    }
+  }
+
+  // rates batches of scrambled Kruskal boards, reporting boards per second
+  // and how many were unique and of each level
+  static void rater() {
+    System.out.println("size     boards/s  unique  easy  medium  hard");
+    for (int side : new int[] {8, 16, 32, 64}) {
+      int boards = 320000 / (side * side);
+      PackedBoard[] batch = new PackedBoard[boards];
+      Random r = new Random(side);
+      for (int i = 0; i < boards; i++) {
+        batch[i] = new PackedBoard(side, side);
+        new KruskalGenerator().generate(batch[i], r);
+        batch[i].randomize(r);
+      }
+      PuzzleRater rater = new PuzzleRater();
+      int[] counts = new int[4];
+      double ms = best(3, () -> {
+        java.util.Arrays.fill(counts, 0);
+        for (PackedBoard board : batch) {
+          Rating rating = rater.rate(board);
+          counts[3] += rating.isUnique() ? 1 : 0;
+          counts[rating.level()]++;
+        }
+      });
+      System.out.printf("%-8s %9.0f %7d %5d %7d %5d%n", side + "x" + side, boards / ms * 1000,
+          counts[3], counts[Rating.EASY], counts[Rating.MEDIUM], counts[Rating.HARD]);
+    }
+  }
+
+  // clicks random tiles of scrambled Kruskal boards and asks for a hint
+  // after every click, against recounting every tile from the targets
+  static void hints() {
+    System.out.println("size         build ms  recount ms  ns/click+hint");
+    for (int side : new int[] {100, 500, 1000, 2000}) {
+      PackedBoard board = new PackedBoard(side, side);
+      Random r = new Random(side);
+      long[] tree = PackedEdges.kruskalBoard(board, r, LightEmAll.MAX_WEIGHT);
+      board.randomize(r);
+      board.setPowerStation(0, true);
+      PowerPropagator power = new PowerPropagator(board, 0);
+      HintEngine[] built = new HintEngine[1];
+      double build = best(3, () -> built[0] = HintEngine.fromTree(board, tree));
+      HintEngine hints = built[0];
+      double recount = best(3, () -> hints.reset());
+      int clicks = 1000000;
+      int[] cells = new int[clicks];
+      for (int i = 0; i < clicks; i++) {
+        cells[i] = r.nextInt(side * side);
+      }
+      long[] sink = new long[1];
+      double ms = best(3, () -> {
+        for (int cell : cells) {
+          power.rotate(cell);
+          hints.rotated(cell, power);
+          sink[0] += hints.next() + hints.clicksRemaining();
+        }
+      });
+      System.out.printf("%-12s %8.1f %11.1f %14.0f%n", side + "x" + side, build, recount,
+          ms * 1e6 / clicks);
+    }
+  }
+
+  // writes and reads back saved games with a solution layer as boards grow
+  static void save() {
+    System.out.println("size         cells      file MB  write ms  read ms");
+    for (int side : new int[] {1000, 2000, 3163}) {
+      PackedBoard board = new PackedBoard(side, side);
+      Random r = new Random(side);
+      long[] tree = PackedEdges.kruskalBoard(board, r, LightEmAll.MAX_WEIGHT);
+      SavedGame game = new SavedGame(board, 0, 0);
+      game.solution = HintEngine.targets(side, side, tree);
+      board.randomize(r);
+      try {
+        File file = File.createTempFile("lightemall", ".lea");
+        double write = best(5, () -> {
+          try {
+            GameFile.write(file, game);
+          }
+          catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+        double read = best(5, () -> {
+          try {
+            GameFile.read(file);
+          }
+          catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+        System.out.printf("%-12s %9d %9.1f %9.1f %8.1f%n", side + "x" + side, side * side,
+            file.length() / 1e6, write, read);
+        file.delete();
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  // archives scrambled Kruskal boards both ways and fetches them back in a
+  // random order, reporting bytes per puzzle against a saved game's layers
+  static void archive() {
+    System.out.println("size     kind       puzzles  bytes/puzzle  saved bytes  gets/s");
+    for (int side : new int[] {16, 64, 256}) {
+      int puzzles = 4000000 / (side * side);
+      try {
+        File explicit = File.createTempFile("lightemall", ".lear");
+        File seeded = File.createTempFile("lightemall", ".lear");
+        ArchiveWriter writer = new ArchiveWriter(explicit);
+        ArchiveWriter seeds = new ArchiveWriter(seeded);
+        for (int i = 0; i < puzzles; i++) {
+          PackedBoard board = new PackedBoard(side, side);
+          Random r = new Random(i);
+          long[] tree = PuzzleArchive.GENERATORS[0].generate(board, r);
+          board.randomize(r);
+          writer.add(tree, board);
+          seeds.addSeeded(0, side, side, i);
+        }
+        writer.close();
+        seeds.close();
+        for (File file : new File[] {explicit, seeded}) {
+          PuzzleArchive archive = new PuzzleArchive(file);
+          int[] order = new int[puzzles];
+          Random r = new Random(side);
+          for (int i = 0; i < puzzles; i++) {
+            order[i] = r.nextInt(puzzles);
+          }
+          double ms = best(3, () -> {
+            try {
+              for (int id : order) {
+                archive.get(id);
+              }
+            }
+            catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+          System.out.printf("%-8s %-9s %8d %13.1f %12d %7.0f%n", side + "x" + side,
+              file == explicit ? "explicit" : "seeded", puzzles,
+              (file.length() - PuzzleArchive.HEADER) / (double) puzzles,
+              GameFile.size(side * side, true), puzzles / ms * 1000);
+          archive.close();
+          file.delete();
+        }
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  // plays random moves on the headless engine, nine rotations to every
+  // station move
+  static void engine() {
+    System.out.println("size        moves/s");
+    for (int side : new int[] {10, 50, 200, 1000}) {
+      PackedBoard board = new PackedBoard(side, side);
+      Random r = new Random(side);
+      new KruskalGenerator().generate(board, r);
+      board.randomize(r);
+      GameEngine engine = new GameEngine(board, 0, 0);
+      int moves = 2000000;
+      int[] cols = new int[moves];
+      int[] rows = new int[moves];
+      for (int i = 0; i < moves; i++) {
+        cols[i] = r.nextInt(side);
+        rows[i] = i % 10 == 9 ? -1 - r.nextInt(4) : r.nextInt(side);
+      }
+      double ms = best(3, () -> {
+        for (int i = 0; i < moves; i++) {
+          if (rows[i] < 0) {
+            engine.movePower(1 << (-1 - rows[i]));
+          }
+          else {
+            engine.rotate(cols[i], rows[i]);
+          }
+        }
+      });
+      System.out.printf("%-11s %8.0f%n", side + "x" + side, moves / ms * 1000);
+    }
+  }
+
+  // opens more and more sessions at once on a loopback GameServer of 8x8
+  // games, every session sending 50 commands, and reports the time to an
+  // answer at the median and the 99th percentile
+  static void server() {
+    System.out.println("sessions  commands  failed  p50 us   p99 us  commands/s");
+    try {
+      GameServer server = new GameServer(0, 8, 8);
+      server.start();
+      for (int sessions : new int[] {100, 1000, 10000}) {
+        LoadClient client = new LoadClient("127.0.0.1", server.port(), sessions, 50);
+        long start = System.nanoTime();
+        client.run();
+        double ms = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%8d %9d %7d %7.0f %8.0f %11.0f%n", sessions,
+            sessions * client.commands, client.failures.get(), client.percentile(50),
+            client.percentile(99), sessions * client.commands / ms * 1000);
+      }
+      server.close();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // steps a batch of boards with random actions, one GameEngine a board
+  // against the batched environment on one worker and on every core
+  static void batch() {
+    System.out.println("size     boards  engines/s  batch 1/s  batch " + ForkJoinPool
+        .getCommonPoolParallelism() + "/s");
+    for (int side : new int[] {8, 16, 32}) {
+      int boards = 1 << 22 >> (2 * Integer.numberOfTrailingZeros(side));
+      int steps = 40;
+      int[][] actions = new int[steps][boards];
+      Random r = new Random(side);
+      for (int[] step : actions) {
+        for (int b = 0; b < boards; b++) {
+          step[b] = r.nextInt(10) == 9 ? BatchEnv.move(1 << r.nextInt(4))
+              : BatchEnv.rotate(r.nextInt(side * side));
+        }
+      }
+      GameEngine[] engines = new GameEngine[boards];
+      for (int b = 0; b < boards; b++) {
+        PackedBoard board = new PackedBoard(side, side);
+        Random seeded = new Random(b);
+        new KruskalGenerator().generate(board, seeded);
+        board.randomize(seeded);
+        engines[b] = new GameEngine(board, 0, 0);
+      }
+      double engineMs = best(3, () -> {
+        for (int[] step : actions) {
+          for (int b = 0; b < boards; b++) {
+            GameEngine engine = engines[b];
+            if (step[b] < 0) {
+              engine.movePower(-step[b]);
+            }
+            else {
+              engine.rotate(step[b] / side, step[b] % side);
+            }
+            engine.isSolved();
+          }
+        }
+      });
+      double[] batchMs = new double[2];
+      ForkJoinPool[] pools = {new ForkJoinPool(1), ForkJoinPool.commonPool()};
+      for (int i = 0; i < 2; i++) {
+        BatchEnv env = new BatchEnv(pools[i], boards, side, side);
+        env.reset(new KruskalGenerator(), 0);
+        batchMs[i] = best(3, () -> {
+          for (int[] step : actions) {
+            env.step(step);
+          }
+        });
+      }
+      pools[0].shutdown();
+      double total = (double) boards * steps * 1000;
+      System.out.printf("%-8s %6d %10.0f %10.0f %10.0f%n", side + "x" + side, boards,
+          total / engineMs, total / batchMs[0], total / batchMs[1]);
+    }
+  }
+
+  // turns the last cell of solved boards round and round, checking for a
+  // win after every turn: the worst case for a look at every cell, which
+  // finds every other cell powered and has to get to the end
+  static void win() {
+    System.out.println("size        scan ns/move  counter ns/move");
+    for (int side : new int[] {10, 100, 1000, 3000}) {
+      PackedBoard board = new PackedBoard(side, side);
+      new KruskalGenerator().generate(board, new Random(side));
+      GameEngine engine = new GameEngine(board, 0, 0);
+      int scanMoves = Math.max(40, 40000000 / (side * side));
+      int counterMoves = 4000000;
+      int[] wins = new int[2];
+      double scanMs = best(3, () -> {
+        for (int i = 0; i < scanMoves; i++) {
+          engine.rotate(side - 1, side - 1);
+          wins[0] += board.isGameOver() ? 1 : 0;
+        }
+      });
+      double counterMs = best(3, () -> {
+        for (int i = 0; i < counterMoves; i++) {
+          engine.rotate(side - 1, side - 1);
+          wins[1] += engine.isSolved() ? 1 : 0;
+        }
+      });
+      System.out.printf("%-11s %12.1f %16.1f%n", side + "x" + side,
+          scanMs * 1e6 / scanMoves, counterMs * 1e6 / counterMoves);
+    }
+  }
+}
@@ -0,0 +1,446 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+// represents a grid of game pieces in column-major order, where every cell
+// is addressed by the single index col * height + row
+interface Board {
+  // the connection bits of a cell, in clockwise order so that rotating a
+  // piece clockwise is a rotation of its 4-bit mask
+  int TOP = 1;
+  int RIGHT = 2;
+  int BOTTOM = 4;
+  int LEFT = 8;
+  int[] DIRECTIONS = {LEFT, RIGHT, TOP, BOTTOM};
+
+  // the number of columns of this board
+  int width();
+
+  // the number of rows of this board
+  int height();
+
+  // returns the connection mask of the given cell
+  int connections(int cell);
+
+  // Effect: sets the connection mask of the given cell
+  void setConnections(int cell, int mask);
+
+  // returns whether the given cell is powered
+  boolean isPowered(int cell);
+
+  // Effect: sets whether the given cell is powered
+  void setPowered(int cell, boolean powered);
+
+  // returns whether the power station is on the given cell
+  boolean isPowerStation(int cell);
+
+  // Effect: sets whether the power station is on the given cell
+  void setPowerStation(int cell, boolean station);
+
+  // rotates a connection mask clockwise
+  static int rotate(int mask) {
+    return ((mask << 1) | (mask >> 3)) & 0xF;
+  }
+
+  // returns the direction opposite to the given one
+  static int opposite(int dir) {
+    return rotate(rotate(dir));
+  }
+
+  // returns the cell index of the given column and row
+  default int cellAt(int col, int row) {
+    return col * this.height() + row;
+  }
+
+  // returns the column of the given cell
+  default int colOf(int cell) {
+    return cell / this.height();
+  }
+
+  // returns the row of the given cell
+  default int rowOf(int cell) {
+    return cell % this.height();
+  }
+
+  // returns the number of cells on this board
+  default int cells() {
+    return this.width() * this.height();
+  }
+
+  // Effect: rotates the given cell clockwise
+  default void rotateClockwise(int cell) {
+    this.setConnections(cell, rotate(this.connections(cell)));
+  }
+
+  // returns the cell next to the given one in the given direction,
+  // or -1 if that would be off the board
+  default int neighbor(int cell, int dir) {
+    int height = this.height();
+    int row = cell % height;
+    if (dir == TOP) {
+      return row == 0 ? -1 : cell - 1;
+    }
+    else if (dir == BOTTOM) {
+      return row == height - 1 ? -1 : cell + 1;
+    }
+    else if (dir == LEFT) {
+      return cell < height ? -1 : cell - height;
+    }
+    else {
+      return cell + height >= this.cells() ? -1 : cell + height;
+    }
+  }
+
+  // returns the neighbor of the given cell in the given direction if both
+  // pieces are wired towards each other, or -1 otherwise
+  default int searchHelp(int col, int row, int dir) {
+    int cell = this.cellAt(col, row);
+    if ((this.connections(cell) & dir) == 0) {
+      return -1;
+    }
+    int next = this.neighbor(cell, dir);
+    if (next == -1 || (this.connections(next) & opposite(dir)) == 0) {
+      return -1;
+    }
+    return next;
+  }
+
+  // Effect: powers every cell connected to the given source, and only those
+  default void bfs(int source) {
+    this.bfs(source, new IntRing(this.cells()));
+  }
+
+  // Effect: powers every cell connected to the given source, and only those,
+  // using the given queue as the worklist
+  default void bfs(int source, IntRing worklist) {
+    int cells = this.cells();
+    for (int i = 0; i < cells; i++) {
+      this.setPowered(i, false);
+    }
+    worklist.clear();
+    worklist.add(source);
+    this.setPowered(source, true);
+    while (!worklist.isEmpty()) {
+      int from = worklist.remove();
+      int mask = this.connections(from);
+      for (int dir = TOP; dir <= LEFT; dir <<= 1) {
+        if ((mask & dir) != 0) {
+          int to = this.neighbor(from, dir);
+          if (to != -1 && (this.connections(to) & opposite(dir)) != 0
+              && !this.isPowered(to)) {
+            this.setPowered(to, true);
+            worklist.add(to);
+          }
+        }
+      }
+    }
+  }
+
+  // Effect: randomizes every cell by rotating it a random number of times,
+  // drawing from the given Random in the same order as LightEmAll always has
+  default void randomize(Random r) {
+    for (int i = 0; i < this.width(); i++) {
+      for (int j = 0; j < this.height(); j++) {
+        int cell = this.cellAt(i, j);
+        for (int k = 0; k < r.nextInt(4); k++) {
+          this.rotateClockwise(cell);
+        }
+      }
+    }
+  }
+
+  // Effect: wires together both ends of every edge of the given tree
+  default void connectEdges(ArrayList<Edge> mst) {
+    for (Edge edge : mst) {
+      int from = this.cellAt(edge.from.col, edge.from.row);
+      int to = this.cellAt(edge.to.col, edge.to.row);
+      int dir;
+      if (edge.from.col < edge.to.col) {
+        dir = RIGHT;
+      }
+      else if (edge.from.col > edge.to.col) {
+        dir = LEFT;
+      }
+      else if (edge.from.row < edge.to.row) {
+        dir = BOTTOM;
+      }
+      else if (edge.from.row > edge.to.row) {
+        dir = TOP;
+      }
+      else {
+        continue;
+      }
+      this.setConnections(from, this.connections(from) | dir);
+      this.setConnections(to, this.connections(to) | opposite(dir));
+    }
+  }
+
+  // determines whether every cell on this board is powered
+  default boolean isGameOver() {
+    int cells = this.cells();
+    for (int i = 0; i < cells; i++) {
+      if (!this.isPowered(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
+
+// a Board that packs every cell into a single byte: the low nibble holds
+// the connection mask and the next two bits the powered and station flags
+class PackedBoard implements Board {
+  static final int POWERED = 16;
+  static final int STATION = 32;
+
+  int width;
+  int height;
+  byte[] cells;
+  // the worklist reused by every bfs on this board
+  IntRing worklist;
+
+  PackedBoard(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.cells = new byte[width * height];
+    this.worklist = new IntRing(width * height);
+  }
+
+  // copies the given board of game pieces into a packed board
+  PackedBoard(ArrayList<ArrayList<GamePiece>> board, int width, int height) {
+    this(width, height);
+    this.load(board);
+  }
+
+  // Effect: copies the given board of game pieces, of this board's size,
+  // into this board
+  void load(ArrayList<ArrayList<GamePiece>> board) {
+    for (int i = 0; i < this.width; i++) {
+      for (int j = 0; j < this.height; j++) {
+        GamePiece gp = board.get(i).get(j);
+        int bits = gp.connections();
+        if (gp.powered) {
+          bits |= POWERED;
+        }
+        if (gp.powerStation) {
+          bits |= STATION;
+        }
+        this.cells[i * this.height + j] = (byte) bits;
+      }
+    }
+  }
+
+  public int width() {
+    return this.width;
+  }
+
+  public int height() {
+    return this.height;
+  }
+
+  public int connections(int cell) {
+    return this.cells[cell] & 0xF;
+  }
+
+  public void setConnections(int cell, int mask) {
+    this.cells[cell] = (byte) ((this.cells[cell] & ~0xF) | (mask & 0xF));
+  }
+
+  public boolean isPowered(int cell) {
+    return (this.cells[cell] & POWERED) != 0;
+  }
+
+  public void setPowered(int cell, boolean powered) {
+    this.set(cell, POWERED, powered);
+  }
+
+  public boolean isPowerStation(int cell) {
+    return (this.cells[cell] & STATION) != 0;
+  }
+
+  public void setPowerStation(int cell, boolean station) {
+    this.set(cell, STATION, station);
+  }
+
+  // Effect: rotates the given cell clockwise with a nibble rotate
+  public void rotateClockwise(int cell) {
+    int bits = this.cells[cell];
+    this.cells[cell] = (byte) ((bits & ~0xF) | Board.rotate(bits & 0xF));
+  }
+
+  // Effect: powers every cell connected to the given source, and only those,
+  // working on the packed bytes directly and allocating nothing
+  public void bfs(int source) {
+    byte[] cells = this.cells;
+    int height = this.height;
+    int last = cells.length - height;
+    IntRing worklist = this.worklist;
+    for (int i = 0; i < cells.length; i++) {
+      cells[i] &= ~POWERED;
+    }
+    worklist.clear();
+    worklist.add(source);
+    cells[source] |= POWERED;
+    while (!worklist.isEmpty()) {
+      int from = worklist.remove();
+      int mask = cells[from];
+      int row = from % height;
+      if ((mask & TOP) != 0 && row != 0) {
+        this.visit(from - 1, BOTTOM);
+      }
+      if ((mask & RIGHT) != 0 && from < last) {
+        this.visit(from + height, LEFT);
+      }
+      if ((mask & BOTTOM) != 0 && row != height - 1) {
+        this.visit(from + 1, TOP);
+      }
+      if ((mask & LEFT) != 0 && from >= height) {
+        this.visit(from - height, RIGHT);
+      }
+    }
+  }
+
+  // Effect: powers and queues the given cell if it is unpowered and wired
+  // back in the given direction
+  void visit(int cell, int back) {
+    int bits = this.cells[cell];
+    if ((bits & back) != 0 && (bits & POWERED) == 0) {
+      this.cells[cell] = (byte) (bits | POWERED);
+      this.worklist.add(cell);
+    }
+  }
+
+  // Effect: sets or clears the given flag of the given cell
+  void set(int cell, int flag, boolean on) {
+    if (on) {
+      this.cells[cell] |= flag;
+    }
+    else {
+      this.cells[cell] &= ~flag;
+    }
+  }
+
+  // returns a GamePiece showing the given cell of this board
+  GamePiece pieceAt(int col, int row) {
+    GamePiece gp = new GamePiece(col, row);
+    this.show(this.cellAt(col, row), gp);
+    return gp;
+  }
+
+  // Effect: makes the given GamePiece show the given cell of this board
+  void show(int cell, GamePiece gp) {
+    gp.setConnections(this.connections(cell));
+    gp.powerStation = this.isPowerStation(cell);
+    gp.powered = this.isPowered(cell);
+  }
+
+  // returns this board as columns of GamePieces
+  ArrayList<ArrayList<GamePiece>> toPieces() {
+    ArrayList<ArrayList<GamePiece>> board = new ArrayList<ArrayList<GamePiece>>();
+    for (int i = 0; i < this.width; i++) {
+      ArrayList<GamePiece> col = new ArrayList<GamePiece>();
+      for (int j = 0; j < this.height; j++) {
+        col.add(this.pieceAt(i, j));
+      }
+      board.add(col);
+    }
+    return board;
+  }
+}
+
+// a Board backed by columns of GamePieces like the ones LightEmAll draws
+class PieceBoard implements Board {
+  ArrayList<ArrayList<GamePiece>> board;
+  int width;
+  int height;
+
+  PieceBoard(ArrayList<ArrayList<GamePiece>> board, int width, int height) {
+    this.board = board;
+    this.width = width;
+    this.height = height;
+  }
+
+  // returns the GamePiece at the given cell
+  GamePiece piece(int cell) {
+    return this.board.get(cell / this.height).get(cell % this.height);
+  }
+
+  public int width() {
+    return this.width;
+  }
+
+  public int height() {
+    return this.height;
+  }
+
+  public int connections(int cell) {
+    return this.piece(cell).connections();
+  }
+
+  public void setConnections(int cell, int mask) {
+    this.piece(cell).setConnections(mask);
+  }
+
+  public boolean isPowered(int cell) {
+    return this.piece(cell).powered;
+  }
+
+  public void setPowered(int cell, boolean powered) {
+    this.piece(cell).powered = powered;
+  }
+
+  public boolean isPowerStation(int cell) {
+    return this.piece(cell).powerStation;
+  }
+
+  public void setPowerStation(int cell, boolean station) {
+    this.piece(cell).powerStation = station;
+  }
+
+  public void rotateClockwise(int cell) {
+    this.piece(cell).rotateClockwise();
+  }
+}
+
+// a fixed-capacity first-in first-out queue of ints in a ring buffer, kept
+// around between searches so that a bfs allocates nothing
+class IntRing {
+  int[] items;
+  int head;
+  int size;
+
+  IntRing(int capacity) {
+    this.items = new int[Math.max(capacity, 1)];
+  }
+
+  // Effect: empties this queue
+  void clear() {
+    this.head = 0;
+    this.size = 0;
+  }
+
+  // returns whether this queue is empty
+  boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  // Effect: adds the given int to the back of this queue
+  void add(int item) {
+    int tail = this.head + this.size;
+    if (tail >= this.items.length) {
+      tail -= this.items.length;
+    }
+    this.items[tail] = item;
+    this.size++;
+  }
+
+  // Effect: removes and returns the int at the front of this queue
+  int remove() {
+    int item = this.items[this.head];
+    this.head++;
+    if (this.head == this.items.length) {
+      this.head = 0;
+    }
+    this.size--;
+    return item;
+  }
+}
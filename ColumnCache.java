@@ -0,0 +1,88 @@
+import javalib.worldimages.*;
+
+// keeps the composed image of every column of a board between frames, along
+// with the balanced tree of BesideImages joining them, and only redraws the
+// columns marked dirty since the last frame and the joins above them
+class ColumnCache {
+  int size;
+  int width;
+  WorldImage[] cols;
+  boolean[] dirty;
+  // the joins of the board image, heap-ordered: node 1 covers every column
+  // and node i's children 2i and 2i + 1 cover the halves of its range
+  WorldImage[] nodes;
+  boolean[] stale;
+
+  ColumnCache(int width, int size) {
+    this.size = size;
+    this.width = width;
+    this.cols = new WorldImage[width];
+    this.dirty = new boolean[width];
+    this.nodes = new WorldImage[4 * Math.max(width, 1)];
+    this.stale = new boolean[this.nodes.length];
+    this.markAll();
+  }
+
+  // Effect: marks the given column, and the joins above it, to be redrawn
+  void markDirty(int col) {
+    this.dirty[col] = true;
+    int node = 1;
+    int lo = 0;
+    int hi = this.width;
+    while (hi - lo > 1) {
+      this.stale[node] = true;
+      int mid = (lo + hi) / 2;
+      if (col < mid) {
+        node = 2 * node;
+        hi = mid;
+      }
+      else {
+        node = 2 * node + 1;
+        lo = mid;
+      }
+    }
+    this.stale[node] = true;
+  }
+
+  // Effect: marks every column to be redrawn
+  void markAll() {
+    for (int i = 0; i < this.dirty.length; i++) {
+      this.dirty[i] = true;
+    }
+    for (int i = 0; i < this.stale.length; i++) {
+      this.stale[i] = true;
+    }
+  }
+
+  // returns the image of the given game's board, redrawing only the dirty
+  // columns and reusing the last image when nothing changed
+  WorldImage boardImage(LightEmAll game) {
+    if (this.width == 0) {
+      return new EmptyImage();
+    }
+    return this.compose(game, 1, 0, this.width);
+  }
+
+  // returns the image of the columns in [lo, hi), which the given node covers
+  WorldImage compose(LightEmAll game, int node, int lo, int hi) {
+    if (!this.stale[node]) {
+      return this.nodes[node];
+    }
+    WorldImage image;
+    if (hi - lo == 1) {
+      if (this.dirty[lo]) {
+        this.cols[lo] = game.drawCol(game.board.get(lo), this.size);
+        this.dirty[lo] = false;
+      }
+      image = this.cols[lo];
+    }
+    else {
+      int mid = (lo + hi) / 2;
+      image = new BesideImage(this.compose(game, 2 * node, lo, mid),
+          this.compose(game, 2 * node + 1, mid, hi));
+    }
+    this.nodes[node] = image;
+    this.stale[node] = false;
+    return image;
+  }
+}
@@ -0,0 +1,122 @@
+// the rules of the game on any Board, with nothing drawn and no javalib, so
+// that tests, bots and simulations can play millions of moves. LightEmAll
+// draws one and turns mouse clicks and arrow keys into its moves
+class GameEngine {
+  Board board;
+  // keeps the powered cells up to date as pieces rotate and the station moves
+  PowerPropagator power;
+  int powerCol;
+  int powerRow;
+  int numClicks;
+  // the spanning tree the board was wired from, packed like PackedEdges, or
+  // null if it is not known
+  long[] tree;
+  // the turns left to the solution, built on the first hint asked for
+  HintEngine hints;
+
+  GameEngine(Board board, int powerCol, int powerRow) {
+    this.reset(board, powerCol, powerRow);
+  }
+
+  // Effect: starts over on the given board with the station on the given
+  // cell, powering it from scratch; for changes made to the board from
+  // outside the game
+  void reset(Board board, int powerCol, int powerRow) {
+    int station = board.cellAt(powerCol, powerRow);
+    this.board = board;
+    this.powerCol = powerCol;
+    this.powerRow = powerRow;
+    board.setPowerStation(station, true);
+    if (this.power == null || this.power.parent.length != board.cells()) {
+      this.power = new PowerPropagator(board, station);
+    }
+    else {
+      this.power.board = board;
+      this.power.reset(station);
+    }
+    if (this.hints != null && this.hints.target.length == board.cells()) {
+      this.hints.board = board;
+      try {
+        this.hints.reset();
+      }
+      catch (IllegalArgumentException e) {
+        // the pieces no longer fit the targets, so they are worked out again
+        this.hints = null;
+      }
+    }
+    else {
+      this.hints = null;
+    }
+  }
+
+  // Effect: rotates the piece at the given column and row clockwise,
+  // counting the click; returns false, doing nothing, if it is off the board
+  boolean rotate(int col, int row) {
+    if (col < 0 || col >= this.board.width() || row < 0 || row >= this.board.height()) {
+      return false;
+    }
+    int cell = this.board.cellAt(col, row);
+    this.numClicks++;
+    this.power.rotate(cell);
+    if (this.hints != null) {
+      this.hints.rotated(cell, this.power);
+    }
+    return true;
+  }
+
+  // Effect: moves the power station one cell in the given Board direction
+  // if both pieces are wired towards each other; returns whether it moved,
+  // never moving for anything but a single Board direction
+  boolean movePower(int dir) {
+    if (dir < Board.TOP || dir > Board.LEFT || Integer.bitCount(dir) != 1) {
+      return false;
+    }
+    int next = this.board.searchHelp(this.powerCol, this.powerRow, dir);
+    if (next == -1) {
+      return false;
+    }
+    this.power.moveStation(next);
+    if (this.hints != null) {
+      for (int i = 0; i < this.power.changedCount; i++) {
+        this.hints.update(this.power.changed[i]);
+      }
+    }
+    this.powerCol = this.board.colOf(next);
+    this.powerRow = this.board.rowOf(next);
+    return true;
+  }
+
+  // returns whether every cell is powered, in constant time
+  boolean isSolved() {
+    return this.power.poweredCount == this.board.cells();
+  }
+
+  // returns the hints for this board, aiming for its spanning tree when it
+  // is known and its pieces fit it and for a solution otherwise, or null if
+  // no solution was found within HintEngine.BUDGET guesses
+  HintEngine hints() {
+    if (this.hints == null && this.tree != null) {
+      try {
+        this.hints = HintEngine.fromTree(this.board, this.tree);
+      }
+      catch (IllegalArgumentException e) {
+        this.hints = null;
+      }
+    }
+    if (this.hints == null) {
+      this.hints = HintEngine.fromSolver(this.board);
+    }
+    return this.hints;
+  }
+
+  // Effect: rotates the piece the hints pick once, counting the click;
+  // returns false if there is nothing left to turn or no solution
+  boolean hint() {
+    HintEngine hints = this.hints();
+    if (hints == null || hints.next() == -1) {
+      return false;
+    }
+    int cell = hints.next();
+    return this.rotate(this.board.colOf(cell), this.board.rowOf(cell));
+  }
+}
@@ -0,0 +1,154 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+// reads and writes games in a compact binary format through memory-mapped
+// files. A file is a 32-byte big-endian header followed by the tiles and,
+// when the header's SOLUTION flag is set, the solved tiles, each layer with
+// two 4-bit connection masks to a byte, the even cell in the low nibble.
+// The header holds the magic number, the version, the flags, and the
+// width, height, power column, power row, time and clicks as ints
+class GameFile {
+  // "LEA" and a format byte, so that other files are turned away at once
+  static final int MAGIC = 0x4C454100;
+  static final int VERSION = 1;
+  static final int HEADER = 32;
+  // the header flag saying a solution layer follows the tiles
+  static final int SOLUTION = 1;
+  // the bytes unpacked or packed at a time, so that huge boards need no
+  // second copy of their layers
+  static final int CHUNK = 1 << 16;
+
+  // returns the size in bytes of a file of a board with the given number of
+  // cells, with or without a solution
+  static long size(int cells, boolean solution) {
+    long layer = (cells + 1L) / 2;
+    return HEADER + (solution ? 2 * layer : layer);
+  }
+
+  // Effect: writes the given game to the given file, replacing it, with a
+  // solution layer if the game has a solution
+  static void write(File file, SavedGame game) throws IOException {
+    PackedBoard board = game.board;
+    int cells = board.cells();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+          size(cells, game.solution != null));
+      out.putInt(MAGIC);
+      out.put((byte) VERSION);
+      out.put((byte) (game.solution != null ? SOLUTION : 0));
+      out.putShort((short) 0);
+      out.putInt(board.width());
+      out.putInt(board.height());
+      out.putInt(game.powerCol);
+      out.putInt(game.powerRow);
+      out.putInt(game.time);
+      out.putInt(game.numClicks);
+      byte[] chunk = new byte[CHUNK];
+      packLayer(out, board.cells, chunk);
+      if (game.solution != null) {
+        packLayer(out, game.solution, chunk);
+      }
+    }
+  }
+
+  // returns the game in the given file. Power is not saved, so the board
+  // comes back with only the station marked and nothing powered
+  static SavedGame read(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long length = channel.size();
+      if (length < HEADER) {
+        throw new IOException("not a saved game: " + file);
+      }
+      MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+      if (in.getInt() != MAGIC) {
+        throw new IOException("not a saved game: " + file);
+      }
+      int version = in.get();
+      if (version != VERSION) {
+        throw new IOException("unsupported save version " + version + ": " + file);
+      }
+      int flags = in.get();
+      in.getShort();
+      int width = in.getInt();
+      int height = in.getInt();
+      int powerCol = in.getInt();
+      int powerRow = in.getInt();
+      if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE
+          || powerCol < 0 || powerCol >= width || powerRow < 0 || powerRow >= height) {
+        throw new IOException("corrupt saved game: " + file);
+      }
+      int cells = width * height;
+      if (length != size(cells, (flags & SOLUTION) != 0)) {
+        throw new IOException("truncated saved game: " + file);
+      }
+      SavedGame game = new SavedGame(new PackedBoard(width, height), powerCol, powerRow);
+      game.time = in.getInt();
+      game.numClicks = in.getInt();
+      byte[] chunk = new byte[CHUNK];
+      unpackLayer(in, game.board.cells, chunk);
+      if ((flags & SOLUTION) != 0) {
+        game.solution = new byte[cells];
+        unpackLayer(in, game.solution, chunk);
+      }
+      game.board.setPowerStation(game.board.cellAt(powerCol, powerRow), true);
+      return game;
+    }
+  }
+
+  // Effect: writes the low nibbles of the given bytes to the given buffer,
+  // two to a byte
+  static void packLayer(ByteBuffer out, byte[] masks, byte[] chunk) {
+    int cells = masks.length;
+    for (int start = 0; start < cells; start += 2 * chunk.length) {
+      int end = Math.min(cells, start + 2 * chunk.length);
+      int n = 0;
+      for (int cell = start; cell < end; cell += 2) {
+        int high = cell + 1 < end ? masks[cell + 1] & 0xF : 0;
+        chunk[n++] = (byte) ((masks[cell] & 0xF) | (high << 4));
+      }
+      out.put(chunk, 0, n);
+    }
+  }
+
+  // Effect: reads the given bytes' worth of nibbles from the given buffer
+  // into them, one to a byte
+  static void unpackLayer(ByteBuffer in, byte[] masks, byte[] chunk) {
+    int cells = masks.length;
+    for (int start = 0; start < cells; start += 2 * chunk.length) {
+      int end = Math.min(cells, start + 2 * chunk.length);
+      int n = (end - start + 1) / 2;
+      in.get(chunk, 0, n);
+      int cell = start;
+      for (int i = 0; i < n; i++) {
+        int b = chunk[i];
+        masks[cell++] = (byte) (b & 0xF);
+        if (cell < end) {
+          masks[cell++] = (byte) ((b >> 4) & 0xF);
+        }
+      }
+    }
+  }
+}
+
+// a game as saved to a file: the board, where the power station is, the
+// time and clicks so far, and the solved mask of every cell or null
+class SavedGame {
+  PackedBoard board;
+  int powerCol;
+  int powerRow;
+  int time;
+  int numClicks;
+  byte[] solution;
+
+  SavedGame(PackedBoard board, int powerCol, int powerRow) {
+    this.board = board;
+    this.powerCol = powerCol;
+    this.powerRow = powerRow;
+  }
+}
@@ -0,0 +1,357 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// hosts many games at once on the loopback interface, one session to a
+// connection, each with its own packed board and GameEngine and its own
+// thread: a virtual thread where the JDK has them. The protocol is binary.
+// On connecting the client gets the width and height as ints and then
+// every cell as the byte PackedBoard keeps for it. The client then sends
+// ROTATE with a column and a row as ints, MOVE with a Board direction as a
+// byte, or QUIT. Every command is answered with the number of tiles that
+// changed as an int, each tile as its cell as an int and its new byte, and
+// a byte that is 1 if the board is solved
+class GameServer {
+  static final int ROTATE = 'R';
+  static final int MOVE = 'M';
+  static final int QUIT = 'Q';
+
+  ServerSocket socket;
+  ExecutorService sessions;
+  int width;
+  int height;
+  // the seed of the next session's board, and the sessions open now
+  AtomicLong seeds;
+  AtomicInteger open;
+  // the connections of the sessions open now, closed with the server since
+  // a session blocked reading its socket does not see an interrupt
+  Set<Socket> clients;
+  Thread acceptor;
+
+  // listens on the given port of the loopback interface, or on any free
+  // port if it is 0, for games on boards of the given size
+  GameServer(int port, int width, int height) throws IOException {
+    this.socket = new ServerSocket(port, 4096, InetAddress.getLoopbackAddress());
+    this.sessions = threadPerTask();
+    this.width = width;
+    this.height = height;
+    this.seeds = new AtomicLong();
+    this.open = new AtomicInteger();
+    this.clients = ConcurrentHashMap.newKeySet();
+  }
+
+  // serves games on the port given as the first argument, 4000 by default,
+  // on boards as wide and high as the next two, 8 by default
+  public static void main(String[] args) throws IOException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+    int width = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+    int height = args.length > 2 ? Integer.parseInt(args[2]) : width;
+    GameServer server = new GameServer(port, width, height);
+    server.start();
+    System.out.println("serving " + width + "x" + height + " games on port " + server.port());
+  }
+
+  // returns an executor that runs every task on a thread of its own:
+  // virtual threads on JDKs that have them, which is looked up by name so
+  // that this still builds on older ones, and pooled platform threads
+  // otherwise
+  static ExecutorService threadPerTask() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    }
+    catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool();
+    }
+  }
+
+  // Effect: starts accepting connections on a thread of its own
+  void start() {
+    this.acceptor = new Thread(this::accept, "game-server");
+    this.acceptor.start();
+  }
+
+  // returns the port this server listens on
+  int port() {
+    return this.socket.getLocalPort();
+  }
+
+  // Effect: hands every connection to a session of its own until closed
+  void accept() {
+    while (!this.socket.isClosed()) {
+      try {
+        Socket client = this.socket.accept();
+        client.setTcpNoDelay(true);
+        this.open.incrementAndGet();
+        this.clients.add(client);
+        if (this.socket.isClosed()) {
+          // close gave up on the sessions before this one was added
+          this.drop(client);
+          continue;
+        }
+        try {
+          this.sessions.execute(new GameSession(this, client, this.seeds.getAndIncrement()));
+        }
+        catch (RejectedExecutionException e) {
+          // close shut the sessions down after the check above
+          this.drop(client);
+        }
+      }
+      catch (IOException e) {
+        // the socket was closed, or the connection dropped before it was
+        // accepted; the loop ends in the first case and goes on otherwise
+      }
+    }
+  }
+
+  // Effect: closes the given connection, which no session will serve
+  void drop(Socket client) throws IOException {
+    this.clients.remove(client);
+    this.open.decrementAndGet();
+    client.close();
+  }
+
+  // Effect: stops accepting connections and ends every session
+  void close() throws IOException {
+    this.socket.close();
+    for (Socket client : this.clients) {
+      client.close();
+    }
+    this.sessions.shutdownNow();
+  }
+}
+
+// one player's game on a GameServer, reading commands from the connection
+// and answering with the tiles they changed
+class GameSession implements Runnable {
+  GameServer server;
+  Socket socket;
+  long seed;
+
+  GameSession(GameServer server, Socket socket, long seed) {
+    this.server = server;
+    this.socket = socket;
+    this.seed = seed;
+  }
+
+  public void run() {
+    try (Socket socket = this.socket) {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(socket.getOutputStream()));
+      PackedBoard board = new PackedBoard(this.server.width, this.server.height);
+      Random r = new Random(this.seed);
+      long[] tree = new KruskalGenerator().generate(board, r);
+      board.randomize(r);
+      GameEngine engine = new GameEngine(board, 0, 0);
+      engine.tree = tree;
+      out.writeInt(board.width);
+      out.writeInt(board.height);
+      out.write(board.cells);
+      out.flush();
+      while (true) {
+        int op = in.read();
+        if (op == GameServer.ROTATE) {
+          int col = in.readInt();
+          int row = in.readInt();
+          boolean ok = engine.rotate(col, row);
+          reply(out, engine, ok ? board.cellAt(col, row) : -1, -1);
+        }
+        else if (op == GameServer.MOVE) {
+          int from = board.cellAt(engine.powerCol, engine.powerRow);
+          int dir = in.readByte();
+          // a client may send anything, but only one direction moves
+          boolean ok = dir >= Board.TOP && dir <= Board.LEFT && Integer.bitCount(dir) == 1
+              && engine.movePower(dir);
+          reply(out, engine, ok ? from : -1,
+              ok ? board.cellAt(engine.powerCol, engine.powerRow) : -1);
+        }
+        else {
+          break;
+        }
+      }
+    }
+    catch (IOException e) {
+      // the client went away, and the session ends with it
+    }
+    finally {
+      this.server.clients.remove(this.socket);
+      this.server.open.decrementAndGet();
+    }
+  }
+
+  // Effect: sends the given cells, unless -1, and the cells whose power
+  // changed in the engine's last move if any cell is given, then whether
+  // the board is solved
+  static void reply(DataOutputStream out, GameEngine engine, int a, int b) throws IOException {
+    PackedBoard board = (PackedBoard) engine.board;
+    PowerPropagator power = engine.power;
+    int count = 0;
+    if (a != -1) {
+      count = (b != -1 ? 2 : 1) + power.changedCount;
+      for (int i = 0; i < power.changedCount; i++) {
+        if (power.changed[i] == a || power.changed[i] == b) {
+          count--;
+        }
+      }
+    }
+    out.writeInt(count);
+    if (a != -1) {
+      tile(out, board, a);
+      if (b != -1) {
+        tile(out, board, b);
+      }
+      for (int i = 0; i < power.changedCount; i++) {
+        int cell = power.changed[i];
+        if (cell != a && cell != b) {
+          tile(out, board, cell);
+        }
+      }
+    }
+    out.writeByte(engine.isSolved() ? 1 : 0);
+    out.flush();
+  }
+
+  // Effect: sends the given cell and its byte
+  static void tile(DataOutputStream out, PackedBoard board, int cell) throws IOException {
+    out.writeInt(cell);
+    out.writeByte(board.cells[cell]);
+  }
+}
+
+// opens many sessions on a GameServer at once, each sending random
+// rotations with a station move every tenth command, timing every answer.
+// Every session connects before any sends a command, so that they are all
+// open together
+class LoadClient {
+  String host;
+  int port;
+  int sessions;
+  int commands;
+  // the time of every command in nanoseconds, by session and then command,
+  // and the commands every session got an answer to, so that the slots of
+  // a session cut off early are left out
+  long[] latencies;
+  int[] completed;
+  // the sessions that could not connect or were cut off, and those whose
+  // boards ended solved
+  AtomicInteger failures;
+  AtomicInteger solved;
+
+  LoadClient(String host, int port, int sessions, int commands) {
+    this.host = host;
+    this.port = port;
+    this.sessions = sessions;
+    this.commands = commands;
+    this.latencies = new long[sessions * commands];
+    this.completed = new int[sessions];
+    this.failures = new AtomicInteger();
+    this.solved = new AtomicInteger();
+  }
+
+  // Effect: plays every session to the end
+  void run() throws InterruptedException {
+    ExecutorService threads = GameServer.threadPerTask();
+    CountDownLatch connected = new CountDownLatch(this.sessions);
+    CountDownLatch done = new CountDownLatch(this.sessions);
+    for (int i = 0; i < this.sessions; i++) {
+      int session = i;
+      threads.execute(() -> {
+        try {
+          this.play(session, connected);
+        }
+        catch (IOException | InterruptedException e) {
+          this.failures.incrementAndGet();
+        }
+        finally {
+          done.countDown();
+        }
+      });
+    }
+    done.await();
+    threads.shutdown();
+  }
+
+  // Effect: plays the given session once every session is connected
+  void play(int session, CountDownLatch connected) throws IOException, InterruptedException {
+    Socket socket;
+    try {
+      socket = new Socket(this.host, this.port);
+    }
+    finally {
+      connected.countDown();
+    }
+    try (Socket s = socket) {
+      s.setTcpNoDelay(true);
+      DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+      int width = in.readInt();
+      int height = in.readInt();
+      byte[] cells = new byte[width * height];
+      in.readFully(cells);
+      connected.await();
+      Random r = new Random(session);
+      boolean solved = false;
+      for (int k = 0; k < this.commands; k++) {
+        long start = System.nanoTime();
+        if (k % 10 == 9) {
+          out.write(GameServer.MOVE);
+          out.writeByte(1 << r.nextInt(4));
+        }
+        else {
+          out.write(GameServer.ROTATE);
+          out.writeInt(r.nextInt(width));
+          out.writeInt(r.nextInt(height));
+        }
+        out.flush();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+          int cell = in.readInt();
+          cells[cell] = in.readByte();
+        }
+        solved = in.readByte() == 1;
+        this.latencies[session * this.commands + k] = System.nanoTime() - start;
+        this.completed[session] = k + 1;
+      }
+      out.write(GameServer.QUIT);
+      out.flush();
+      if (solved) {
+        this.solved.incrementAndGet();
+      }
+    }
+  }
+
+  // returns the given percentile of the times of the answered commands in
+  // microseconds, or 0 if none was answered
+  double percentile(double p) {
+    long[] sorted = new long[this.latencies.length];
+    int n = 0;
+    for (int session = 0; session < this.sessions; session++) {
+      System.arraycopy(this.latencies, session * this.commands, sorted, n,
+          this.completed[session]);
+      n += this.completed[session];
+    }
+    if (n == 0) {
+      return 0;
+    }
+    sorted = Arrays.copyOf(sorted, n);
+    Arrays.sort(sorted);
+    int at = (int) Math.min(sorted.length - 1, Math.round(p / 100 * (sorted.length - 1)));
+    return sorted[at] / 1e3;
+  }
+}
@@ -0,0 +1,209 @@
+import java.util.Arrays;
+
+// answers which tile to turn next and how many clicks are left, keeping the
+// solved mask of every cell and the cells that are not turned to it yet.
+// The targets are worked out once, from the spanning tree when the board has
+// one or by solving it otherwise; after that a click only updates the cell
+// it turned and the cells whose power changed. Targets are one solution, so
+// a board solved some other way may still report clicks remaining
+class HintEngine {
+  // NEED[mask][target] is the fewest clockwise turns that take mask to
+  // target, or -1 if no number of turns does
+  static final int[][] NEED = new int[16][16];
+  // the guesses a solve for hints may make before giving up
+  static final long BUDGET = 1000;
+
+  static {
+    for (int mask = 0; mask < 16; mask++) {
+      for (int target = 0; target < 16; target++) {
+        NEED[mask][target] = -1;
+      }
+      for (int k = 3; k >= 0; k--) {
+        NEED[mask][PuzzleSolver.ROTATED[mask][k]] = k;
+      }
+    }
+  }
+
+  Board board;
+  byte[] target;
+  // the turns every cell still needs, and their total
+  int[] need;
+  int remaining;
+  // the cells still needing turns, split by whether they are powered: a
+  // powered one is on the station's network, so fixing it lights more
+  IntSet powered;
+  IntSet unpowered;
+
+  HintEngine(Board board, byte[] target) {
+    this.board = board;
+    this.target = target;
+    this.need = new int[target.length];
+    this.powered = new IntSet(target.length);
+    this.unpowered = new IntSet(target.length);
+    this.reset();
+  }
+
+  // returns a hint engine for the given board aiming for the given spanning
+  // tree, see PackedEdges
+  static HintEngine fromTree(Board board, long[] tree) {
+    return new HintEngine(board, targets(board.width(), board.height(), tree));
+  }
+
+  // returns the masks of every cell of a board of the given size wired into
+  // the given spanning tree
+  static byte[] targets(int width, int height, long[] tree) {
+    PackedBoard solved = new PackedBoard(width, height);
+    PackedEdges.connect(tree, solved);
+    return solved.cells;
+  }
+
+  // returns a hint engine for the given board aiming for the first solution
+  // the solver finds, or null if the board has none or the solver gives up
+  // after BUDGET guesses, so that asking for a hint never hangs the game
+  static HintEngine fromSolver(Board board) {
+    return fromSolver(board, BUDGET);
+  }
+
+  // returns a hint engine for the given board aiming for the first solution
+  // the solver finds within the given number of guesses, or null
+  static HintEngine fromSolver(Board board, long budget) {
+    PuzzleSolver solver = new PuzzleSolver(board);
+    solver.budget = budget;
+    if (!solver.solve()) {
+      return null;
+    }
+    byte[] target = new byte[solver.cells];
+    for (int cell = 0; cell < target.length; cell++) {
+      target[cell] = (byte) solver.solvedMask(cell);
+    }
+    return new HintEngine(board, target);
+  }
+
+  // Effect: recounts the turns of every cell, for changes made to the board
+  // from outside the game
+  void reset() {
+    this.powered.clear();
+    this.unpowered.clear();
+    this.remaining = 0;
+    for (int cell = 0; cell < this.target.length; cell++) {
+      this.need[cell] = 0;
+      this.update(cell);
+    }
+  }
+
+  // Effect: recounts the turns the given cell needs after it turned or its
+  // power changed; throws if no number of turns reaches its target, which
+  // only a target that does not fit the board can cause
+  void update(int cell) {
+    int need = NEED[this.board.connections(cell)][this.target[cell]];
+    if (need < 0) {
+      throw new IllegalArgumentException("cell " + cell + " is not a turn of its target");
+    }
+    this.remaining += need - this.need[cell];
+    this.need[cell] = need;
+    boolean lit = this.board.isPowered(cell);
+    if (need != 0 && lit) {
+      this.unpowered.remove(cell);
+      this.powered.add(cell);
+    }
+    else if (need != 0) {
+      this.powered.remove(cell);
+      this.unpowered.add(cell);
+    }
+    else {
+      this.powered.remove(cell);
+      this.unpowered.remove(cell);
+    }
+  }
+
+  // Effect: updates the given cell, just turned, and every cell whose power
+  // the given propagator changed in its last update
+  void rotated(int cell, PowerPropagator power) {
+    this.update(cell);
+    for (int i = 0; i < power.changedCount; i++) {
+      this.update(power.changed[i]);
+    }
+  }
+
+  // returns the cell to turn next, or -1 if every cell is turned to its
+  // target. Powered cells come first, as turning one joins more of the
+  // board to the station
+  int next() {
+    if (!this.powered.isEmpty()) {
+      return this.powered.last();
+    }
+    else if (!this.unpowered.isEmpty()) {
+      return this.unpowered.last();
+    }
+    else {
+      return -1;
+    }
+  }
+
+  // returns the number of clicks left to reach the target
+  int clicksRemaining() {
+    return this.remaining;
+  }
+
+  // returns the number of clicks the given cell needs
+  int turns(int cell) {
+    return this.need[cell];
+  }
+}
+
+// a set of ints below a fixed bound that adds, removes and picks a member in
+// constant time, keeping its members packed at the front of an array
+class IntSet {
+  int[] items;
+  // the position of every int in items, or -1 if it is not a member
+  int[] index;
+  int size;
+
+  IntSet(int bound) {
+    this.items = new int[bound];
+    this.index = new int[bound];
+    Arrays.fill(this.index, -1);
+  }
+
+  // returns whether the given int is a member
+  boolean contains(int item) {
+    return this.index[item] != -1;
+  }
+
+  // Effect: adds the given int unless it is a member already
+  void add(int item) {
+    if (this.index[item] == -1) {
+      this.index[item] = this.size;
+      this.items[this.size++] = item;
+    }
+  }
+
+  // Effect: removes the given int, moving the last member into its place
+  void remove(int item) {
+    int at = this.index[item];
+    if (at != -1) {
+      int last = this.items[--this.size];
+      this.items[at] = last;
+      this.index[last] = at;
+      this.index[item] = -1;
+    }
+  }
+
+  // returns whether this set is empty
+  boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  // returns the member added last, unless it was moved by a removal
+  int last() {
+    return this.items[this.size - 1];
+  }
+
+  // Effect: empties this set
+  void clear() {
+    for (int i = 0; i < this.size; i++) {
+      this.index[this.items[i]] = -1;
+    }
+    this.size = 0;
+  }
+}
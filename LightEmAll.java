@@ -3,6 +3,16 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Random;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.StandardOpenOption;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import tester.*;
 import javalib.impworld.*;
@@ -25,7 +35,7 @@ class Edge {
 //comparator to compare edges by weight 
 class CompareByWeight implements Comparator<Edge> {
   public int compare(Edge edge1, Edge edge2) {
-    return edge1.weight - edge2.weight;
+    return Integer.compare(edge1.weight, edge2.weight);
   }
 }
 
@@ -66,16 +76,84 @@ class UnionFind<T> {
   }
 }
 
+//union-find over the dense cell indices 0 to n - 1 of a board, linking by
+//size and halving paths as it goes so that find never recurses
+class IntUnionFind {
+  int[] parent;
+  int[] size;
+
+  IntUnionFind(int n) {
+    this.parent = new int[n];
+    this.size = new int[n];
+    for (int i = 0; i < n; i++) {
+      this.parent[i] = i;
+      this.size[i] = 1;
+    }
+  }
+
+  // Find the root of the set containing element x
+  public int find(int x) {
+    while (this.parent[x] != x) {
+      this.parent[x] = this.parent[this.parent[x]];
+      x = this.parent[x];
+    }
+    return x;
+  }
+
+  // Effect: Union the sets containing x and y, hanging the smaller one under
+  // the larger; returns whether they were separate sets
+  public boolean union(int x, int y) {
+    int rootX = this.find(x);
+    int rootY = this.find(y);
+    if (rootX == rootY) {
+      return false;
+    }
+    if (this.size[rootX] < this.size[rootY]) {
+      int temp = rootX;
+      rootX = rootY;
+      rootY = temp;
+    }
+    this.parent[rootY] = rootX;
+    this.size[rootX] += this.size[rootY];
+    return true;
+  }
+
+  // Find the root of the set containing element x without compressing the
+  // path, so that many threads may call it while no one unions
+  public int root(int x) {
+    while (this.parent[x] != x) {
+      x = this.parent[x];
+    }
+    return x;
+  }
+
+  // Check if x and y have the same root
+  public boolean isConnected(int x, int y) {
+    return this.find(x) == this.find(y);
+  }
+
+  // returns the number of elements in the set containing x
+  public int size(int x) {
+    return this.size[this.find(x)];
+  }
+}
+
 
 //represents the LightEmAll game 
 class LightEmAll extends World {
   // a list of columns of GamePieces,
-  // i.e., represents the board in column-major order
+  // i.e., represents the board in column-major order; the pieces show the
+  // packed board below, for drawing, and are brought up to date after
+  // every move
   ArrayList<ArrayList<GamePiece>> board;
+  // the board the game is played on, see grid
+  PackedBoard cells;
   // a list of all nodes
   ArrayList<GamePiece> nodes;
   // a list of edges of the minimum spanning tree
   ArrayList<Edge> mst;
+  // the same tree as packed edges, see PackedEdges
+  long[] tree;
   // the width and height of the board
   int width;
   int height;
@@ -88,8 +166,33 @@ class LightEmAll extends World {
   Random r;
   int time = 0;
   int numClicks = 0;
+  // edge weights are drawn from 0 (inclusive) to this bound (exclusive)
+  static final int MAX_WEIGHT = 100;
 
   boolean gameOver;
+  // plays the moves on this board; the station, clicks and gameOver above
+  // are copied from it after every move, for drawing
+  GameEngine engine;
+  // the images of every kind of tile at the size last drawn
+  TileImageCache tiles;
+  // the images of the columns last drawn
+  ColumnCache columns;
+  // paints the board into a single raster image instead, when not null
+  RasterRenderer raster;
+  // the number of columns and rows shown when the board is bigger than the
+  // window, or 0 to show the whole board, and the top-left shown cell
+  int viewCols = 0;
+  int viewRows = 0;
+  int camCol = 0;
+  int camRow = 0;
+  // where the mouse was pressed, for dragging the view
+  Posn pressed;
+  // what worldEnds answers while the game goes on, made on the first tick;
+  // its scene is never drawn, and each game has its own so that nothing
+  // placed on one game's scene shows up in another
+  WorldEnd playing;
+  // the winning scene, built the first time worldEnds sees the game won
+  WorldEnd victory;
   ArrayList<String> directions = new ArrayList<String>();
 
   //constructor using kruskal's 
@@ -121,6 +224,12 @@ class LightEmAll extends World {
 
   //constructor using kruskal's for testing  
   LightEmAll(int width, int height, Random r, boolean kruskal) {
+    this(width, height, r, kruskal, false);
+  }
+
+  //constructor that builds the spanning tree with the parallel generator
+  //on the common ForkJoinPool when parallel is true
+  LightEmAll(int width, int height, Random r, boolean kruskal, boolean parallel) {
     this.width = width;
     this.height = height;
     this.board = this.makeBoard();
@@ -132,7 +241,11 @@ class LightEmAll extends World {
     directions.add("top");
     directions.add("bottom");
 
-    if (kruskal) {
+    if (parallel) {
+      this.generate(new BoruvkaGenerator(ForkJoinPool.commonPool()));
+      this.randomize(r);
+    }
+    else if (kruskal) {
       generateNodes();
       this.mst = kruskalMST();
       connectEdges();
@@ -146,6 +259,53 @@ class LightEmAll extends World {
     this.bfs();
   }
 
+  //constructor that wires the board with the given generator
+  LightEmAll(int width, int height, Random r, PuzzleGenerator generator) {
+    this.width = width;
+    this.height = height;
+    this.board = this.makeBoard();
+    this.size = 50;
+    this.gameOver = false;
+    this.r = r;
+    directions.add("left");
+    directions.add("right");
+    directions.add("top");
+    directions.add("bottom");
+
+    this.generate(generator);
+    this.randomize(r);
+    this.bfs();
+  }
+
+  //constructor that resumes a saved game, see GameFile
+  LightEmAll(SavedGame game) {
+    this.width = game.board.width;
+    this.height = game.board.height;
+    this.board = game.board.toPieces();
+    this.size = 50;
+    this.gameOver = false;
+    this.r = new Random();
+    directions.add("left");
+    directions.add("right");
+    directions.add("top");
+    directions.add("bottom");
+    this.powerCol = game.powerCol;
+    this.powerRow = game.powerRow;
+    this.time = game.time;
+    this.numClicks = game.numClicks;
+    this.mst = new ArrayList<Edge>();
+    this.bfs();
+    if (game.solution != null) {
+      try {
+        this.engine.hints = new HintEngine(this.engine.board, game.solution);
+      }
+      catch (IllegalArgumentException e) {
+        // the saved solution does not fit the tiles, so hints solve afresh
+        this.engine.hints = null;
+      }
+    }
+  }
+
   //original constructor 
   LightEmAll(int width, int height) {
     this.width = width;
@@ -166,22 +326,107 @@ class LightEmAll extends World {
 
   //places the board on top of a worldscene
   public WorldScene makeScene() {
+    if (this.viewCols > 0) {
+      return this.makeViewScene();
+    }
 
     WorldScene scene = new WorldScene(this.height * this.size, this.width * this.size);
-    scene.placeImageXY(this.drawBoard(this.size), 
+    WorldImage boardImage;
+    if (this.raster != null) {
+      boardImage = this.raster().toWorldImage(this.grid());
+    }
+    else {
+      boardImage = this.columns().boardImage(this);
+    }
+    scene.placeImageXY(boardImage, 
         this.width * this.size / 2, this.height * this.size / 2);
 
     return scene;
   }
 
+  // places only the tiles inside the view on a window-sized scene
+  WorldScene makeViewScene() {
+    WorldScene scene = new WorldScene(this.viewCols * this.size, this.viewRows * this.size);
+    scene.placeImageXY(this.drawView(this.size),
+        this.viewCols * this.size / 2, this.viewRows * this.size / 2);
+    return scene;
+  }
+
+  // draws the tiles inside the view, touching no other piece
+  public WorldImage drawView(int size) {
+    TileImageCache tiles = this.tilesFor(size);
+    WorldImage[] cols = new WorldImage[this.viewCols];
+    WorldImage[] tileImages = new WorldImage[this.viewRows];
+    for (int i = 0; i < cols.length; i++) {
+      ArrayList<GamePiece> col = this.board.get(this.camCol + i);
+      for (int j = 0; j < tileImages.length; j++) {
+        tileImages[j] = tiles.image(col.get(this.camRow + j));
+      }
+      cols[i] = aboveAll(tileImages, 0, tileImages.length);
+    }
+    return besideAll(cols, 0, cols.length);
+  }
+
+  // Effect: shows only the given number of columns and rows of the board,
+  // scrolled with w, a, s and d or by dragging; 0 shows the whole board
+  public void useViewport(int cols, int rows) {
+    this.viewCols = Math.min(cols, this.width);
+    this.viewRows = Math.min(rows, this.height);
+    this.scroll(0, 0);
+  }
+
+  // Effect: moves the view by the given number of columns and rows,
+  // keeping it on the board
+  public void scroll(int cols, int rows) {
+    this.camCol = Math.max(0, Math.min(this.camCol + cols, this.width - this.viewCols));
+    this.camRow = Math.max(0, Math.min(this.camRow + rows, this.height - this.viewRows));
+  }
+
+  // Effect: remembers where a drag of the view starts
+  public void onMousePressed(Posn pos) {
+    this.pressed = pos;
+  }
+
+  // Effect: drags the view along with the mouse
+  public void onMouseReleased(Posn pos) {
+    if (this.pressed != null && this.viewCols > 0) {
+      this.scroll((this.pressed.x - pos.x) / this.size, (this.pressed.y - pos.y) / this.size);
+    }
+    this.pressed = null;
+  }
+
   // draws the game board
   public WorldImage drawBoard(int size) {
+    WorldImage[] cols = new WorldImage[this.board.size()];
+    for (int i = 0; i < cols.length; i++) {
+      cols[i] = this.drawCol(this.board.get(i), size);
+    }
+    return besideAll(cols, 0, cols.length);
+  }
+
+  // places the images in [lo, hi) beside each other as a balanced tree, so
+  // that the image is only logarithmically deep
+  static WorldImage besideAll(WorldImage[] images, int lo, int hi) {
+    if (hi - lo == 0) {
+      return new EmptyImage();
+    }
+    else if (hi - lo == 1) {
+      return images[lo];
+    }
+    int mid = (lo + hi) / 2;
+    return new BesideImage(besideAll(images, lo, mid), besideAll(images, mid, hi));
+  }
 
-    WorldImage boardImage = new EmptyImage();
-    for (ArrayList<GamePiece> col : this.board) {
-      boardImage = new BesideImage(boardImage, this.drawCol(col, size));
+  // places the images in [lo, hi) above each other as a balanced tree
+  static WorldImage aboveAll(WorldImage[] images, int lo, int hi) {
+    if (hi - lo == 0) {
+      return new EmptyImage();
     }
-    return boardImage;
+    else if (hi - lo == 1) {
+      return images[lo];
+    }
+    int mid = (lo + hi) / 2;
+    return new AboveImage(aboveAll(images, lo, mid), aboveAll(images, mid, hi));
   }
 
   // Effect: adds 1 second to every clock tick
@@ -191,24 +436,68 @@ class LightEmAll extends World {
 
   //draws a col
   public WorldImage drawCol(ArrayList<GamePiece> col, int size) {
-    WorldImage colImage = new EmptyImage();
+    TileImageCache tiles = this.tilesFor(size);
+    WorldImage[] tileImages = new WorldImage[col.size()];
+    for (int i = 0; i < tileImages.length; i++) {
+      tileImages[i] = tiles.image(col.get(i));
+    }
+    return aboveAll(tileImages, 0, tileImages.length);
+  }
 
-    for (GamePiece piece : col) {
-      WorldImage regTile = piece.tileImage(size, 10, Color.LIGHT_GRAY, false);
-      WorldImage poweredTile = piece.tileImage(size, 10, Color.yellow, false);
-      WorldImage powerStationTile = piece.tileImage(size, 10, Color.yellow, true);
+  // Effect: switches makeScene between drawing the board as one raster
+  // image and composing it from tile images; a viewport is always composed
+  // from tile images, since the raster covers the whole board
+  public void useRaster(boolean raster) {
+    if (raster) {
+      this.raster = new RasterRenderer(this.width, this.height, this.size);
+    }
+    else {
+      this.raster = null;
+    }
+  }
 
-      if (piece.powerStation) {
-        colImage = new AboveImage(colImage, powerStationTile);
-      }
-      else if (piece.isPowered()) {
-        colImage = new AboveImage(colImage, poweredTile);
-      }
-      else {
-        colImage = new AboveImage(colImage, regTile);
-      }
+  // returns the raster the board is painted into, made anew when the board
+  // or the tile size changed since it was made
+  RasterRenderer raster() {
+    if (this.raster.width != this.width || this.raster.height != this.height
+        || this.raster.size != this.size) {
+      this.raster = new RasterRenderer(this.width, this.height, this.size);
     }
-    return colImage;
+    return this.raster;
+  }
+
+  // returns the column images kept between frames
+  ColumnCache columns() {
+    if (this.columns == null || this.columns.cols.length != this.width
+        || this.columns.size != this.size) {
+      this.columns = new ColumnCache(this.width, this.size);
+    }
+    return this.columns;
+  }
+
+  // Effect: brings the piece of every cell whose power changed in the last
+  // update up to date, and marks its column to be redrawn
+  void markPowerChanges() {
+    ColumnCache columns = this.columns();
+    PowerPropagator power = this.engine.power;
+    for (int i = 0; i < power.changedCount; i++) {
+      this.show(power.changed[i]);
+      columns.markDirty(power.changed[i] / this.height);
+    }
+  }
+
+  // Effect: redraws the whole board on the next frame, for changes made to
+  // the pieces from outside the game
+  public void invalidate() {
+    this.columns().markAll();
+  }
+
+  // returns the tile images for the given tile size
+  TileImageCache tilesFor(int size) {
+    if (this.tiles == null || this.tiles.size != size) {
+      this.tiles = new TileImageCache(size);
+    }
+    return this.tiles;
   }
 
   // initial make board from part 1 
@@ -279,143 +568,172 @@ class LightEmAll extends World {
     return board;
   }
 
-  // Effect: determines whether all the game pieces on the board have been powered up
-  public void isGameOver() {
-    int pieces = this.width * this.height;
-    int count = 0;
-    for (int i = 0; i < this.width; i++) {
-      for (int j = 0; j < this.height; j++) {
-        if (this.board.get(i).get(j).isPowered()) {
-          count += 1;
-        }
-      }
+  // returns the packed board the game is played on, copied from the pieces
+  // the first time and whenever the board changed size
+  PackedBoard grid() {
+    if (this.cells == null || this.cells.width != this.width
+        || this.cells.height != this.height) {
+      this.cells = new PackedBoard(this.board, this.width, this.height);
     }
-    gameOver = (pieces == count);
+    return this.cells;
+  }
+
+  // Effect: makes the piece of the given cell show it again
+  void show(int cell) {
+    this.cells.show(cell, this.board.get(cell / this.height).get(cell % this.height));
   }
 
-  // Effect: conducts the binary search through the game to power the cells
+  // Effect: makes every piece show its cell again, after a change to the
+  // whole packed board
+  void showAll() {
+    for (int cell = 0; cell < this.cells.cells(); cell++) {
+      this.show(cell);
+    }
+  }
+
+  // Effect: determines whether all the game pieces on the board have been powered up,
+  // from the engine's count of powered pieces
+  public void isGameOver() {
+    gameOver = this.engine.isSolved();
+  }
+
+  // Effect: conducts the binary search through the game to power the cells;
+  // for changes made to the pieces from outside the game, which are copied
+  // into the packed board first
   void bfs() {
-    GamePiece to;
-    GamePiece from;
-    from = this.board.get(powerCol).get(powerRow);
-    ArrayList<GamePiece> worklist = new ArrayList<GamePiece>();
-    worklist.add(from);
-    for (ArrayList<GamePiece> gp : this.board) {
-      for (GamePiece g: gp) {
-        g.powered = false;
-      }
+    PackedBoard grid = this.grid();
+    grid.load(this.board);
+    if (this.engine == null) {
+      this.engine = new GameEngine(grid, this.powerCol, this.powerRow);
     }
-    from.powered = true;
-    while (!worklist.isEmpty()) {
-      from = worklist.remove(0);
-      for (String dir: this.directions) {
-        to = searchHelp(from.col, from.row, dir);
-        if (to != null && !to.powered) {
-          to.powered = true;
-          worklist.add(to);
-        }
-      }
+    else {
+      this.engine.reset(grid, this.powerCol, this.powerRow);
     }
+    this.engine.tree = this.tree;
+    this.engine.numClicks = this.numClicks;
+    this.showAll();
+    this.invalidate();
     this.isGameOver();
   }
 
-  //helper for checking neighbors 
-  GamePiece searchHelp(int col, int row, String currentDirection) {
-    GamePiece currentPiece = this.board.get(col).get(row);
+  // Effect: copies the station, the clicks and whether the game is won from
+  // the engine after a move
+  void sync() {
+    this.powerCol = this.engine.powerCol;
+    this.powerRow = this.engine.powerRow;
+    this.numClicks = this.engine.numClicks;
+    this.isGameOver();
+  }
 
-    // Check if the current piece exists and has the desired direction
-    if (currentPiece == null) {
-      return null;
+  // returns the hints for this board, see GameEngine.hints
+  HintEngine hints() {
+    return this.engine.hints();
+  }
+
+  // Effect: saves this game to the given file, with the solution the hints
+  // aim for if there are hints or a spanning tree
+  void save(File file) throws IOException {
+    SavedGame game = new SavedGame(new PackedBoard(this.width, this.height),
+        this.powerCol, this.powerRow);
+    System.arraycopy(this.grid().cells, 0, game.board.cells, 0, game.board.cells.length);
+    game.time = this.time;
+    game.numClicks = this.numClicks;
+    if (this.engine.hints != null) {
+      game.solution = this.engine.hints.target;
+    }
+    else if (this.tree != null) {
+      game.solution = HintEngine.targets(this.width, this.height, this.tree);
     }
+    GameFile.write(file, game);
+  }
 
-    // Determine the coordinates of the neighboring piece based on the direction
-    int neighborCol = col;
-    int neighborRow = row;
+  // returns the game saved in the given file
+  static LightEmAll load(File file) throws IOException {
+    return new LightEmAll(GameFile.read(file));
+  }
 
-    if (currentDirection.equals("left")) {
-      neighborCol -= 1;
-    } else if (currentDirection.equals("right")) {
-      neighborCol += 1;
-    } else if (currentDirection.equals("top")) {
-      neighborRow -= 1;
-    } else if (currentDirection.equals("bottom")) {
-      neighborRow += 1;
+  // Effect: turns the tile the hints pick once, counting it as a click
+  void hint() {
+    HintEngine hints = this.hints();
+    if (hints != null && hints.next() != -1) {
+      int cell = hints.next();
+      this.click(this.engine.board.colOf(cell), this.engine.board.rowOf(cell));
     }
+  }
 
-    // Check if the neighboring piece is within the bounds of the board
-    if (neighborCol < 0 || neighborCol >= this.width || neighborRow < 0 
-        || neighborRow >= this.height) {
+  //helper for checking neighbors 
+  GamePiece searchHelp(int col, int row, String currentDirection) {
+    int neighbor = this.grid().searchHelp(col, row, this.direction(currentDirection));
+    if (neighbor == -1) {
       return null;
     }
+    return this.board.get(neighbor / this.height).get(neighbor % this.height);
+  }
 
-    GamePiece neighborPiece = this.board.get(neighborCol).get(neighborRow);
-
-    // Check if the neighboring piece exists
-    if (neighborPiece == null) {
-      return null;
+  // returns the Board direction bit named by the given direction
+  int direction(String dir) {
+    if (dir.equals("left")) {
+      return Board.LEFT;
     }
-
-    // Check if the neighboring piece has the corresponding connection to the current piece
-    if (currentDirection.equals("left") && currentPiece.hasLeft() 
-        && neighborPiece.hasRight()) {
-      return neighborPiece;
-    } else if (currentDirection.equals("right") && currentPiece.hasRight() 
-        && neighborPiece.hasLeft()) {
-      return neighborPiece;
-    } else if (currentDirection.equals("top") && currentPiece.hasTop() 
-        && neighborPiece.hasBot()) {
-      return neighborPiece;
-    } else if (currentDirection.equals("bottom") && currentPiece.hasBot() 
-        && neighborPiece.hasTop()) {
-      return neighborPiece;
-    } else {
-      return null;
+    else if (dir.equals("right")) {
+      return Board.RIGHT;
+    }
+    else if (dir.equals("top")) {
+      return Board.TOP;
+    }
+    else if (dir.equals("bottom")) {
+      return Board.BOTTOM;
+    }
+    else {
+      return 0;
     }
   }
 
   // Effect: uses arrow keys to move the power station
   public void onKeyEvent(String key) {
-    if (key.equals("up") && this.powerRow != 0) {
-      if (this.board.get(this.powerCol).get(this.powerRow).hasTop()
-          && this.board.get(this.powerCol).get(this.powerRow - 1).hasBot()) {
-        // this becomes not power station
-        this.board.get(this.powerCol).get(this.powerRow).movePower();
-        this.board.get(this.powerCol).get(this.powerRow - 1).movePower();
-        // update power station row
-        this.powerRow -= 1;
-      }
+    if (key.equals("up")) {
+      this.movePower(Board.TOP);
     }
-    if (key.equals("down") && this.powerRow != this.height - 1) {
-      if (this.board.get(powerCol).get(powerRow).hasBot() 
-          && this.board.get(this.powerCol).get(this.powerRow + 1).hasTop()) {
-        // this becomes not power station
-        this.board.get(this.powerCol).get(this.powerRow).movePower();
-        this.board.get(this.powerCol).get(this.powerRow + 1).movePower();
-        // update power station row
-        this.powerRow += 1;
-      }
+    else if (key.equals("down")) {
+      this.movePower(Board.BOTTOM);
     }
-    if (key.equals("left") && powerCol != 0) {
-      if (this.board.get(powerCol).get(powerRow).hasLeft() 
-          && this.board.get(this.powerCol - 1).get(this.powerRow).hasRight()) {
-        // this becomes not power station
-        this.board.get(this.powerCol).get(this.powerRow).movePower();
-        this.board.get(this.powerCol - 1).get(this.powerRow).movePower();
-        // update power station row
-        this.powerCol -= 1;
-      }
+    else if (key.equals("left")) {
+      this.movePower(Board.LEFT);
     }
-    if (key.equals("right") && powerCol != width - 1) {
-      if (this.board.get(powerCol).get(powerRow).hasRight() 
-          && this.board.get(this.powerCol + 1).get(this.powerRow).hasLeft()) {
-        // this becomes not power station
-        this.board.get(this.powerCol).get(this.powerRow).movePower();
-        this.board.get(this.powerCol + 1).get(this.powerRow).movePower();
-        // update power station row
-        this.powerCol += 1;
-      }
+    else if (key.equals("right")) {
+      this.movePower(Board.RIGHT);
+    }
+    else if (key.equals("w")) {
+      this.scroll(0, -1);
+    }
+    else if (key.equals("s")) {
+      this.scroll(0, 1);
+    }
+    else if (key.equals("a")) {
+      this.scroll(-1, 0);
+    }
+    else if (key.equals("d")) {
+      this.scroll(1, 0);
+    }
+    else if (key.equals("h")) {
+      this.hint();
+    }
+  }
+
+  // Effect: moves the power station one piece in the given Board direction
+  // if both pieces are wired towards each other; the powered cells stay the
+  // same, so only the two columns are redrawn
+  void movePower(int dir) {
+    int from = this.powerCol;
+    int fromCell = this.engine.board.cellAt(this.powerCol, this.powerRow);
+    if (this.engine.movePower(dir)) {
+      this.show(fromCell);
+      this.show(this.engine.board.cellAt(this.engine.powerCol, this.engine.powerRow));
+      this.columns().markDirty(from);
+      this.columns().markDirty(this.engine.powerCol);
+      this.markPowerChanges();
+      this.sync();
     }
-    this.bfs();
   }
 
   // Effect: rotates the game piece 
@@ -423,26 +741,34 @@ class LightEmAll extends World {
     int tileSize = this.size;
     int clickedCol = pos.x / tileSize;
     int clickedRow = pos.y / tileSize;
+    if (this.viewCols > 0) {
+      clickedCol += this.camCol;
+      clickedRow += this.camRow;
+    }
 
     if (clickedCol >= 0 && clickedCol < width 
         && clickedRow >= 0 && clickedRow < height) {
-      GamePiece clickedPiece  = board.get(clickedCol).get(clickedRow);
-      numClicks++;
-      clickedPiece.rotateClockwise(); 
-      this.bfs();
+      this.click(clickedCol, clickedRow);
     }   
     //if there is a connection, draw tile with wirecolor as yellow 
   }
 
+  // Effect: rotates the game piece at the given column and row, counting
+  // the click
+  void click(int col, int row) {
+    if (this.engine.rotate(col, row)) {
+      this.show(this.cells.cellAt(col, row));
+      this.columns().markDirty(col);
+      this.markPowerChanges();
+      this.sync();
+    }
+  }
+
   // Effect: randomizes every game piece by rotating random number of times 
   public void randomize(Random r) {
-    for (int i = 0; i < this.width; i++) {
-      for (int j = 0; j < this.height; j++) {
-        for (int k = 0; k < r.nextInt(4); k++) {
-          this.board.get(i).get(j).rotateClockwise();
-        }
-      }
-    }
+    this.grid().randomize(r);
+    this.showAll();
+    this.invalidate();
   }
 
   //Effect: generate all nodes in the game 
@@ -458,90 +784,68 @@ class LightEmAll extends World {
     }
   }
 
+  // Effect: wires this board with the given generator and keeps its tree
+  void generate(PuzzleGenerator generator) {
+    generateNodes();
+    this.tree = generator.generate(this.grid(), this.r);
+    this.showAll();
+    this.mst = this.mstEdges();
+  }
+
   // find the mst using kruskal's 
   public ArrayList<Edge> kruskalMST() { 
-    ArrayList<Edge> edgesInTree = new ArrayList<>();
-    ArrayList<Edge> worklist = generateEdges();
-    worklist.sort(new CompareByWeight());
-
-    UnionFind<GamePiece> uf = new UnionFind<>();
-
-    int edgeCount = 0;
-
-    if (edgeCount < this.nodes.size()) {
-      for (Edge edge : worklist) {
-        if (!uf.isConnected(edge.from, edge.to)) {
-          edgesInTree.add(edge);
-          uf.union(edge.from, edge.to);
-          edgeCount++;
-        }
-
-      }
-    }
-    return edgesInTree;
+    long[] edges = PackedEdges.generate(this.width, this.height, this.r, MAX_WEIGHT);
+    this.tree = PackedEdges.kruskal(PackedEdges.sortByWeight(edges, MAX_WEIGHT),
+        this.width, this.height);
+    return this.mstEdges();
   }
 
-  // generate edges of the game for mst 
-  public ArrayList<Edge> generateEdges() {
-    ArrayList<Edge> edges = new ArrayList<>();
-    for (GamePiece vertex : this.nodes) {
-      int col = vertex.col;
-      int row = vertex.row;
-
-      if (col > 0) {
-        edges.add(new Edge(vertex, board.get(col - 1).get(row), r.nextInt(100)));
-      }
-      if (row > 0) {
-        edges.add(new Edge(vertex, board.get(col).get(row - 1), r.nextInt(100)));
-      }
+  // returns the packed tree as Edges between the pieces of this board
+  public ArrayList<Edge> mstEdges() {
+    if (this.tree == null) {
+      return new ArrayList<Edge>();
     }
-    return edges;
+    return PackedEdges.toEdges(this.tree, this.board, this.height);
   }
 
-  // Effect: connects the edges of the game 
+  // Effect: connects the edges of the game: the packed tree when there is
+  // one, and the Edges in mst otherwise
   public void connectEdges() {
-    for (Edge edge : mst) {
-      GamePiece from = edge.from;
-      GamePiece to = edge.to;
-
-      if (from.col < to.col) {
-        from.right = true;
-        to.left = true;
-      } else if (from.col > to.col) {
-        from.left = true;
-        to.right = true;
-      } else if (from.row < to.row) {
-        from.bottom = true;
-        to.top = true;
-      } else if (from.row > to.row) {
-        from.top = true;
-        to.bottom = true;
-      }
+    if (this.tree != null) {
+      PackedEdges.connect(this.tree, this.grid());
     }
+    else if (this.mst != null) {
+      this.grid().connectEdges(this.mst);
+    }
+    this.showAll();
   }
 
-  //ends the world 
+  //ends the world once the game is won, building the winning scene the first time
+  //it is asked for and doing no image work at all while the game goes on
   public WorldEnd worldEnds() {
-    TextImage winText = new TextImage("YOU WIN", this.size, Color.green);
-    String timeTakenStr = "Time Taken: " + Integer.toString(time) + " seconds";
-    TextImage timeTaken = new TextImage(timeTakenStr, this.size, Color.red);
-    String clicksTakenStr = "Number of Clicks: " + Integer.toString(numClicks);
-    TextImage clicksTaken = new TextImage(clicksTakenStr, this.size, Color.red);
-    WorldScene scene = this.makeScene();
-
-
-    if (gameOver) {
-      scene.placeImageXY(winText, (this.size * this.width) / 2, 
-          (this.size * this.height) / 4);
-      scene.placeImageXY(timeTaken, (this.size * this.width) / 2, 
-          (this.size * this.height) / 2);
-      scene.placeImageXY(clicksTaken, (this.size * this.width) / 2, 
-          (this.size * this.height * 3) / 4);
-      return new WorldEnd(true, scene);
+    if (!gameOver) {
+      this.victory = null;
+      if (this.playing == null) {
+        this.playing = new WorldEnd(false, new WorldScene(0, 0));
+      }
+      return this.playing;
     }
-    else {
-      return new WorldEnd(false, scene);
+    if (this.victory == null) {
+      TextImage winText = new TextImage("YOU WIN", this.size, Color.green);
+      String timeTakenStr = "Time Taken: " + Integer.toString(time) + " seconds";
+      TextImage timeTaken = new TextImage(timeTakenStr, this.size, Color.red);
+      String clicksTakenStr = "Number of Clicks: " + Integer.toString(numClicks);
+      TextImage clicksTaken = new TextImage(clicksTakenStr, this.size, Color.red);
+      WorldScene scene = this.makeScene();
+      // the text goes in the middle of the window, which is the view if any
+      int sceneWidth = this.size * (this.viewCols > 0 ? this.viewCols : this.width);
+      int sceneHeight = this.size * (this.viewCols > 0 ? this.viewRows : this.height);
+      scene.placeImageXY(winText, sceneWidth / 2, sceneHeight / 4);
+      scene.placeImageXY(timeTaken, sceneWidth / 2, sceneHeight / 2);
+      scene.placeImageXY(clicksTaken, sceneWidth / 2, (sceneHeight * 3) / 4);
+      this.victory = new WorldEnd(true, scene);
     }
+    return this.victory;
   }
 
 }
@@ -682,6 +986,32 @@ class GamePiece {
     return this.powered;
   }
 
+  // returns the connections of this game piece as a Board mask
+  public int connections() {
+    int mask = 0;
+    if (this.top) {
+      mask |= Board.TOP;
+    }
+    if (this.right) {
+      mask |= Board.RIGHT;
+    }
+    if (this.bottom) {
+      mask |= Board.BOTTOM;
+    }
+    if (this.left) {
+      mask |= Board.LEFT;
+    }
+    return mask;
+  }
+
+  // Effect: sets the connections of this game piece from a Board mask
+  public void setConnections(int mask) {
+    this.top = (mask & Board.TOP) != 0;
+    this.right = (mask & Board.RIGHT) != 0;
+    this.bottom = (mask & Board.BOTTOM) != 0;
+    this.left = (mask & Board.LEFT) != 0;
+  }
+
   // Effect: rotates this GamePiece clockwise 
   public void rotateClockwise() {
     boolean top = this.top; //original top
@@ -822,6 +1152,126 @@ class ExamplesLight {
         edge1, edge2, edge3)));
   }
 
+  //test for PackedEdges.sortByWeight, a stable counting sort
+  boolean testSortByWeight(Tester t) {
+    long edge1 = PackedEdges.pack(5, Board.LEFT, 99);
+    long edge2 = PackedEdges.pack(1, Board.TOP, 0);
+    long edge3 = PackedEdges.pack(2, Board.TOP, 4);
+    long edge4 = PackedEdges.pack(6, Board.LEFT, 4);
+    long[] edges = {edge1, edge3, edge2, edge4};
+    long[] reversed = {edge1, edge4, edge2, edge3};
+
+    // edges of equal weight keep the order they came in
+    return t.checkExpect(PackedEdges.sortByWeight(edges, LightEmAll.MAX_WEIGHT),
+        new long[] {edge2, edge3, edge4, edge1})
+        && t.checkExpect(PackedEdges.sortByWeight(reversed, LightEmAll.MAX_WEIGHT),
+            new long[] {edge2, edge4, edge3, edge1})
+        && t.checkExpect(PackedEdges.sortByWeight(new long[0], LightEmAll.MAX_WEIGHT),
+            new long[0]);
+  }
+
+  //test that kruskalMST stops with a spanning tree of n - 1 edges
+  void testKruskalEdgeCount(Tester t) {
+    LightEmAll game = new LightEmAll(7, 5, new Random(3), true);
+    t.checkExpect(game.mst.size(), 34);
+    LightEmAll single = new LightEmAll(1, 1, new Random(3), true);
+    t.checkExpect(single.mst.size(), 0);
+  }
+
+  //test packing and unpacking an edge
+  void testPackedEdge(Tester t) {
+    long edge = PackedEdges.pack(7, Board.TOP, 42);
+    t.checkExpect(PackedEdges.weight(edge), 42);
+    t.checkExpect(PackedEdges.from(edge), 7);
+    t.checkExpect(PackedEdges.dir(edge), Board.TOP);
+    t.checkExpect(PackedEdges.to(edge, 3), 6);
+    long left = PackedEdges.pack(7, Board.LEFT, 0);
+    t.checkExpect(PackedEdges.dir(left), Board.LEFT);
+    t.checkExpect(PackedEdges.to(left, 3), 4);
+  }
+
+  //test the packed pipeline builds the same tree as the Edge pipeline
+  void testPackedKruskal(Tester t) {
+    this.initConditions();
+    long[] packed = PackedEdges.generate(2, 2, new Random(5), LightEmAll.MAX_WEIGHT);
+    t.checkExpect(packed.length, 4);
+    t.checkExpect(PackedEdges.weight(packed[0]), 87);
+
+    PackedBoard board = new PackedBoard(2, 2);
+    long[] tree = PackedEdges.kruskalBoard(board, new Random(5), LightEmAll.MAX_WEIGHT);
+    t.checkExpect(PackedEdges.toEdges(tree, this.kruskalSmall.board, 2), this.kruskalSmall.mst);
+    t.checkExpect(board.connections(board.cellAt(1, 1)), Board.LEFT | Board.TOP);
+    t.checkExpect(board.connections(board.cellAt(0, 0)), Board.BOTTOM);
+  }
+
+  //test the parallel generator builds a spanning tree that depends only on the seed
+  void testParallelMst(Tester t) {
+    ParallelMst single = new ParallelMst(new ForkJoinPool(1));
+    ParallelMst many = new ParallelMst(new ForkJoinPool(4));
+    long[] tree = single.generate(300, 200, 42L);
+
+    t.checkExpect(tree.length, 300 * 200 - 1);
+    t.checkExpect(many.generate(300, 200, 42L), tree);
+
+    PackedBoard board = new PackedBoard(300, 200);
+    PackedEdges.connect(tree, board);
+    board.bfs(0);
+    t.checkExpect(board.isGameOver(), true);
+
+    t.checkExpect(single.generate(1, 1, 42L).length, 0);
+    t.checkExpect(single.generate(5, 1, 42L).length, 4);
+  }
+
+  //test the parallel constructor makes a solvable board
+  void testParallelConstructor(Tester t) {
+    LightEmAll game = new LightEmAll(6, 4, new Random(2), true, true);
+    t.checkExpect(game.mst.size(), 23);
+    PackedBoard solved = new PackedBoard(6, 4);
+    PackedEdges.connect(game.tree, solved);
+    solved.bfs(0);
+    t.checkExpect(solved.isGameOver(), true);
+  }
+
+  //returns whether the given tree is a spanning tree of a packed board
+  //of the given size and wires exactly the connections of that board
+  boolean spans(long[] tree, PackedBoard board) {
+    PackedBoard wired = new PackedBoard(board.width, board.height);
+    PackedEdges.connect(tree, wired);
+    wired.bfs(0);
+    boolean same = true;
+    for (int i = 0; i < board.cells(); i++) {
+      same = same && wired.connections(i) == board.connections(i);
+    }
+    return tree.length == board.cells() - 1 && wired.isGameOver() && same;
+  }
+
+  //test every generator wires a spanning tree and follows its Random
+  void testGenerators(Tester t) {
+    PuzzleGenerator[] generators = {new KruskalGenerator(),
+        new BoruvkaGenerator(ForkJoinPool.commonPool()), new WilsonGenerator(),
+        new PrimGenerator(), new BacktrackerGenerator()};
+    for (PuzzleGenerator generator : generators) {
+      for (int side = 1; side < 12; side += 5) {
+        PackedBoard board = new PackedBoard(side, side + 3);
+        PackedBoard again = new PackedBoard(side, side + 3);
+        t.checkExpect(this.spans(generator.generate(board, new Random(side)), board), true);
+        generator.generate(again, new Random(side));
+        t.checkExpect(again.cells, board.cells);
+      }
+    }
+  }
+
+  //test the generator constructor
+  void testGeneratorConstructor(Tester t) {
+    this.initConditions();
+    LightEmAll wilson = new LightEmAll(5, 4, new Random(1), new WilsonGenerator());
+    t.checkExpect(wilson.mst.size(), 19);
+    t.checkExpect(wilson.nodes.size(), 20);
+    LightEmAll kruskal = new LightEmAll(2, 2, new Random(5), new KruskalGenerator());
+    t.checkExpect(kruskal.board, this.kruskalSmall.board);
+    t.checkExpect(kruskal.mst, this.kruskalSmall.mst);
+  }
+
   //* Tests for UnionFind Class *//
 
   //test for find 
@@ -861,6 +1311,32 @@ class ExamplesLight {
         && t.checkExpect(uf.isConnected(gp1, gp3), false);
   }
 
+  //* Tests for IntUnionFind Class *//
+
+  //test for find, union and isConnected
+  void testIntUnionFind(Tester t) {
+    IntUnionFind iuf = new IntUnionFind(6);
+    t.checkExpect(iuf.find(3), 3);
+    t.checkExpect(iuf.union(0, 1), true);
+    t.checkExpect(iuf.union(2, 1), true);
+    t.checkExpect(iuf.union(0, 2), false);
+    t.checkExpect(iuf.isConnected(0, 2), true);
+    t.checkExpect(iuf.isConnected(0, 3), false);
+    t.checkExpect(iuf.size(2), 3);
+    t.checkExpect(iuf.size(5), 1);
+  }
+
+  //test that a long chain of unions neither recurses nor grows deep
+  void testIntUnionFindChain(Tester t) {
+    int n = 1000000;
+    IntUnionFind iuf = new IntUnionFind(n);
+    for (int i = 1; i < n; i++) {
+      iuf.union(i - 1, i);
+    }
+    t.checkExpect(iuf.isConnected(0, n - 1), true);
+    t.checkExpect(iuf.size(0), n);
+  }
+
   // * Tests for LightEmAll Class *//
 
   // test makeboard with kruskal 
@@ -1080,7 +1556,6 @@ class ExamplesLight {
     WorldScene scene2 = this.lem1.makeScene();
     scene2.placeImageXY(winText, (this.lem1.width * this.lem1.size) / 2, 
         (this.lem1.height * this.lem1.size) / 2);
-    WorldScene scene3 = this.lem2.makeScene();
 
     t.checkExpect(this.lem1.gameOver,true);
 
@@ -1089,7 +1564,29 @@ class ExamplesLight {
         // check that the world has not ended
 
         // need to implement the random
-        && t.checkExpect(this.lem2.worldEnds(), new WorldEnd(false, scene3));
+        && t.checkExpect(this.lem2.worldEnds(), new WorldEnd(false, new WorldScene(0, 0)));
+  }
+
+  // test that worldEnds builds the winning scene once, and only once won
+  void testWorldEndsCached(Tester t) {
+    LightEmAll game = new LightEmAll(3, 3, new Random(4), true);
+    WorldEnd playing = game.worldEnds();
+    t.checkExpect(playing.worldEnds, false);
+    t.checkExpect(game.worldEnds() == playing, true);
+    t.checkExpect(new LightEmAll(3, 3, new Random(4), true).worldEnds() == playing, false);
+    t.checkExpect(game.victory, null);
+    while (game.hints().next() != -1) {
+      game.hint();
+    }
+    t.checkExpect(game.gameOver, true);
+    WorldEnd won = game.worldEnds();
+    t.checkExpect(won.worldEnds, true);
+    t.checkExpect(game.worldEnds() == won, true);
+
+    // a game that is no longer won drops the scene, whose clicks are stale
+    game.onMouseClicked(new Posn(25, 25));
+    t.checkExpect(game.worldEnds() == playing, true);
+    t.checkExpect(game.victory, null);
   }
 
   // test bfs
@@ -1163,13 +1660,15 @@ class ExamplesLight {
     this.initConditions();
 
     return t.checkExpect(this.lem1.drawBoard(this.lem1.size),
-        new BesideImage(new BesideImage(new BesideImage(new BesideImage(
-            new BesideImage(new EmptyImage(), 
-                this.lem1.drawCol(this.lem1.board.get(0), this.lem1.size)),
-            this.lem1.drawCol(this.lem1.board.get(1), this.lem1.size)),
-            this.lem1.drawCol(this.lem1.board.get(2), this.lem1.size)),
-            this.lem1.drawCol(this.lem1.board.get(3), this.lem1.size)),
-            this.lem1.drawCol(this.lem1.board.get(4), this.lem1.size)));
+        new BesideImage(
+            new BesideImage(
+                this.lem1.drawCol(this.lem1.board.get(0), this.lem1.size),
+                this.lem1.drawCol(this.lem1.board.get(1), this.lem1.size)),
+            new BesideImage(
+                this.lem1.drawCol(this.lem1.board.get(2), this.lem1.size),
+                new BesideImage(
+                    this.lem1.drawCol(this.lem1.board.get(3), this.lem1.size),
+                    this.lem1.drawCol(this.lem1.board.get(4), this.lem1.size)))));
   }
 
   // test drawCol
@@ -1177,27 +1676,43 @@ class ExamplesLight {
     this.initConditions();
 
     return t.checkExpect(this.lem1.drawCol(this.lem1.board.get(0),
-        this.lem1.size), new AboveImage(new AboveImage(new AboveImage(
-            new AboveImage(new EmptyImage(), 
+        this.lem1.size), new AboveImage(
+            new AboveImage(
                 this.lem1.board.get(0).get(0).tileImage(this.lem1.size,
+                    10, Color.LIGHT_GRAY, false),
+                this.lem1.board.get(0).get(1).tileImage(this.lem1.size,
                     10, Color.LIGHT_GRAY, false)),
-            this.lem1.board.get(0).get(1).tileImage(this.lem1.size,
-                10, Color.LIGHT_GRAY, false)),
-            this.lem1.board.get(0).get(2).tileImage(this.lem1.size,
-                10, Color.yellow, false)),
-            this.lem1.board.get(0).get(3).tileImage(this.lem1.size,
-                10, Color.LIGHT_GRAY, false)))
+            new AboveImage(
+                this.lem1.board.get(0).get(2).tileImage(this.lem1.size,
+                    10, Color.yellow, false),
+                this.lem1.board.get(0).get(3).tileImage(this.lem1.size,
+                    10, Color.LIGHT_GRAY, false))))
         && t.checkExpect(this.lem1.drawCol(this.lem1.board.get(2),
-            this.lem1.size), new AboveImage(new AboveImage(new AboveImage(
-                new AboveImage(new EmptyImage(), 
+            this.lem1.size), new AboveImage(
+                new AboveImage(
                     this.lem1.board.get(2).get(0).tileImage(this.lem1.size,
+                        10, Color.yellow, false),
+                    this.lem1.board.get(2).get(1).tileImage(this.lem1.size,
                         10, Color.yellow, false)),
-                this.lem1.board.get(2).get(1).tileImage(this.lem1.size,
-                    10, Color.yellow, false)),
-                this.lem1.board.get(2).get(2).tileImage(this.lem1.size,
-                    10, Color.yellow, true)),
-                this.lem1.board.get(2).get(3).tileImage(this.lem1.size,
-                    10, Color.yellow, false)));
+                new AboveImage(
+                    this.lem1.board.get(2).get(2).tileImage(this.lem1.size,
+                        10, Color.yellow, true),
+                    this.lem1.board.get(2).get(3).tileImage(this.lem1.size,
+                        10, Color.yellow, false))));
+  }
+
+  // test besideAll and aboveAll build balanced trees
+  void testBalancedImages(Tester t) {
+    WorldImage a = new TextImage("a", 10, Color.black);
+    WorldImage b = new TextImage("b", 10, Color.black);
+    WorldImage c = new TextImage("c", 10, Color.black);
+    WorldImage[] images = {a, b, c};
+    t.checkExpect(LightEmAll.besideAll(images, 0, 0), new EmptyImage());
+    t.checkExpect(LightEmAll.besideAll(images, 0, 1), a);
+    t.checkExpect(LightEmAll.besideAll(images, 0, 3),
+        new BesideImage(a, new BesideImage(b, c)));
+    t.checkExpect(LightEmAll.aboveAll(images, 0, 3),
+        new AboveImage(a, new AboveImage(b, c)));
   }
 
   // test randomize (rotate gamepieces random amount of times)
@@ -1225,33 +1740,29 @@ class ExamplesLight {
     // initially game is not over
     t.checkExpect(this.lem4.gameOver, false);
 
-    // makes each game piece powered
+    // powering pieces by hand goes around the engine, so it does not count
     this.lem4.board.get(0).get(0).powered = true;
-    this.lem4.board.get(0).get(1).powered = true;
-    this.lem4.board.get(0).get(2).powered = true;
-    this.lem4.board.get(0).get(3).powered = true;
-    this.lem4.board.get(1).get(0).powered = true;
-    this.lem4.board.get(1).get(1).powered = true;
-    this.lem4.board.get(1).get(2).powered = true;
-    this.lem4.board.get(1).get(3).powered = true;
-    this.lem4.board.get(2).get(0).powered = true;
-    this.lem4.board.get(2).get(1).powered = true;
-    this.lem4.board.get(2).get(2).powered = true;
-    this.lem4.board.get(2).get(3).powered = true;
-    this.lem4.board.get(3).get(0).powered = true;
-    this.lem4.board.get(3).get(1).powered = true;
-    this.lem4.board.get(3).get(2).powered = true;
-    this.lem4.board.get(3).get(3).powered = true;
-    this.lem4.board.get(4).get(0).powered = true;
-    this.lem4.board.get(4).get(1).powered = true;
-    this.lem4.board.get(4).get(2).powered = true;
-    this.lem4.board.get(4).get(3).powered = true;
-
-    // sets gameOver boolean 
     this.lem4.isGameOver();
+    t.checkExpect(this.lem4.gameOver, false);
+
+    // wires the pieces into a comb hanging from the top row
+    for (int col = 0; col < 5; col++) {
+      for (int row = 0; row < 4; row++) {
+        GamePiece gp = this.lem4.board.get(col).get(row);
+        gp.top = row > 0;
+        gp.bottom = row < 3;
+        gp.left = row == 0 && col > 0;
+        gp.right = row == 0 && col < 4;
+      }
+    }
+
+    // powers the board again, which sets gameOver
+    this.lem4.bfs();
 
     // game is over
     t.checkExpect(this.lem4.gameOver, true);
+    this.lem4.isGameOver();
+    t.checkExpect(this.lem4.gameOver, true);
   }
 
   //test for generateNodes 
@@ -1267,8 +1778,8 @@ class ExamplesLight {
         Arrays.asList(gp1, gp2, gp3, gp4)));
   }
 
-  //test for generateEdges with random weights 
-  void testGenerateEdges(Tester t) {   
+  //test the mst edges drawn with random weights
+  void testMstEdges(Tester t) {   
     //gamepieces 
     this.initConditions();
     GamePiece gp1 = this.kruskalSmall.board.get(0).get(0);
@@ -1298,6 +1809,18 @@ class ExamplesLight {
     t.checkExpect(edge1.to.top, false);
     t.checkExpect(edge1.to.bottom, false);
 
+    //without a packed tree the game is wired from its Edges
+    PackedBoard expected = new PackedBoard(2, 2);
+    expected.connectEdges(this.kruskalSmall.mst);
+    Board grid = this.kruskalSmall.grid();
+    for (int cell = 0; cell < 4; cell++) {
+      grid.setConnections(cell, 0);
+    }
+    this.kruskalSmall.tree = null;
+    this.kruskalSmall.connectEdges();
+    for (int cell = 0; cell < 4; cell++) {
+      t.checkExpect(this.kruskalSmall.grid().connections(cell), expected.connections(cell));
+    }
   }
 
   //test kruskalmst 
@@ -1448,6 +1971,1270 @@ class ExamplesLight {
 
   }
 
+  // * Tests for PuzzlePool *//
+
+  // waits up to a few seconds for the pool to have the given number of
+  // games of the given size ready
+  void awaitReady(PuzzlePool pool, int width, int height, int count) {
+    for (int i = 0; i < 500 && pool.ready(width, height) < count; i++) {
+      try {
+        Thread.sleep(10);
+      }
+      catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  // test taking games from a warm and a cold pool
+  void testPuzzlePool(Tester t) throws InterruptedException {
+    PuzzlePool pool = new PuzzlePool(2, 1, 10L);
+    pool.warm(6, 4);
+    this.awaitReady(pool, 6, 4, 2);
+    t.checkExpect(pool.ready(6, 4), 2);
+
+    LightEmAll game = pool.take(6, 4);
+    t.checkExpect(game.width, 6);
+    t.checkExpect(game.height, 4);
+    t.checkExpect(game.mst.size(), 23);
+    t.checkExpect(pool.hits.get(), 1L);
+
+    LightEmAll cold = pool.take(3, 3);
+    t.checkExpect(cold.width, 3);
+    t.checkExpect(pool.misses.get(), 1L);
+    t.checkExpect(pool.hitRate(), 0.5);
+
+    this.awaitReady(pool, 3, 3, 2);
+    t.checkExpect(pool.ready(3, 3), 2);
+    t.checkExpect(pool.refills.get() >= 4, true);
+    t.checkExpect(pool.shutdown(5000), true);
+  }
+
+  // * Tests for TileImageCache *//
+
+  // test the cache builds the same images as tileImage, once each
+  void testTileImageCache(Tester t) {
+    this.initConditions();
+    TileImageCache cache = new TileImageCache(50);
+    GamePiece station = this.lem1.board.get(2).get(2);
+    GamePiece powered = this.lem1.board.get(2).get(1);
+    GamePiece unpowered = this.lem1.board.get(0).get(0);
+
+    t.checkExpect(cache.image(station), station.tileImage(50, 10, Color.yellow, true));
+    t.checkExpect(cache.image(powered), powered.tileImage(50, 10, Color.yellow, false));
+    t.checkExpect(cache.image(unpowered),
+        unpowered.tileImage(50, 10, Color.LIGHT_GRAY, false));
+    t.checkExpect(cache.image(unpowered) == cache.image(unpowered), true);
+    t.checkExpect(TileImageCache.state(powered), TileImageCache.POWERED);
+
+    t.checkExpect(this.lem1.tilesFor(50) == this.lem1.tilesFor(50), true);
+    t.checkExpect(this.lem1.tilesFor(20).size, 20);
+  }
+
+  // * Tests for ColumnCache *//
+
+  // test only the changed columns are redrawn between frames
+  void testColumnCache(Tester t) {
+    this.initConditions();
+    WorldImage first = this.lem1.columns().boardImage(this.lem1);
+    WorldImage col0 = this.lem1.columns.cols[0];
+    WorldImage col3 = this.lem1.columns.cols[3];
+    WorldImage firstRight = this.lem1.columns.nodes[3];
+
+    // nothing changed, so the same image is reused
+    t.checkExpect(this.lem1.columns().boardImage(this.lem1) == first, true);
+
+    // rotating a piece in column 0 only redraws column 0
+    this.lem1.onMouseClicked(new Posn(25, 25));
+    WorldImage second = this.lem1.columns().boardImage(this.lem1);
+    t.checkExpect(second == first, false);
+    t.checkExpect(this.lem1.columns.cols[0] == col0, false);
+    t.checkExpect(this.lem1.columns.cols[3] == col3, true);
+    t.checkExpect(this.lem1.columns.nodes[3] == firstRight, true);
+    t.checkExpect(second, this.lem1.drawBoard(this.lem1.size));
+
+    // the redrawn board matches a full redraw after power changes
+    this.lem1.onMouseClicked(new Posn(75, 125));
+    this.lem1.onKeyEvent("up");
+    t.checkExpect(this.lem1.columns().boardImage(this.lem1),
+        this.lem1.drawBoard(this.lem1.size));
+
+    // outside changes are picked up after invalidate
+    this.lem1.board.get(3).get(0).rotateClockwise();
+    this.lem1.invalidate();
+    t.checkExpect(this.lem1.columns().boardImage(this.lem1),
+        this.lem1.drawBoard(this.lem1.size));
+  }
+
+  // * Tests for RasterRenderer *//
+
+  // test the sprites are laid out like tileImage
+  void testSprites(Tester t) {
+    int[] up = RasterRenderer.sprite(50, Board.TOP, TileImageCache.UNPOWERED);
+    int[] lit = RasterRenderer.sprite(50, Board.RIGHT, TileImageCache.POWERED);
+    int gray = Color.LIGHT_GRAY.getRGB();
+    int dark = Color.DARK_GRAY.getRGB();
+    int yellow = Color.yellow.getRGB();
+
+    t.checkExpect(up[0], Color.black.getRGB());
+    t.checkExpect(up[5 * 50 + 25], gray);
+    t.checkExpect(up[25 * 50 + 25], gray);
+    t.checkExpect(up[45 * 50 + 25], dark);
+    t.checkExpect(lit[25 * 50 + 45], yellow);
+    t.checkExpect(lit[25 * 50 + 5], dark);
+  }
+
+  // test painting only repaints the cells that changed
+  void testRasterPaint(Tester t) {
+    this.initConditions();
+    PackedBoard grid = this.lem1.grid();
+    RasterRenderer raster = new RasterRenderer(5, 4, 20);
+    t.checkExpect(raster.paint(grid), 20);
+    t.checkExpect(raster.paint(grid), 0);
+
+    this.lem1.onMouseClicked(new Posn(25, 25));
+    t.checkExpect(raster.paint(grid) >= 1, true);
+    int station = grid.cellAt(2, 2);
+    t.checkExpect(raster.painted[station], TileImageCache.STATION * 16 + grid.connections(station));
+    t.checkExpect(raster.canvas.getRGB(2 * 20 + 10, 2 * 20 + 10) != Color.DARK_GRAY.getRGB(),
+        true);
+
+    this.lem1.useRaster(true);
+    t.checkExpect(this.lem1.makeScene() != null, true);
+    t.checkExpect(this.lem1.raster.shown, this.lem1.raster.painted);
+
+    // a new tile size gets a new raster
+    this.lem1.size = 30;
+    this.lem1.makeScene();
+    t.checkExpect(this.lem1.raster.size, 30);
+    this.lem1.size = 50;
+    this.lem1.useRaster(false);
+    t.checkExpect(this.lem1.raster, null);
+  }
+
+  // test that the runs of every sprite cover it exactly, in its colors, in
+  // far fewer fills than it has pixels
+  void testRasterRuns(Tester t) {
+    RasterRenderer raster = new RasterRenderer(2, 2, 50);
+    for (int key = 0; key < 48; key++) {
+      int[] sprite = raster.sprites[key];
+      int[] runs = raster.runs[key];
+      int next = 0;
+      for (int i = 0; i < raster.runColors[key].length; i++) {
+        t.checkExpect(runs[2 * i], next);
+        for (int p = next; p < next + runs[2 * i + 1]; p++) {
+          t.checkExpect(sprite[p] & 0xFFFFFF, raster.runColors[key][i].getRGB() & 0xFFFFFF);
+        }
+        next += runs[2 * i + 1];
+      }
+      t.checkExpect(next, 50 * 50);
+      t.checkExpect(raster.runColors[key].length < 50 * 50 / 4, true);
+    }
+    t.checkExpect(raster.runColors[0][0] == raster.runColors[1][0], true);
+  }
+
+  // test rendering a packed board to a PNG file
+  void testRenderToPng(Tester t) throws IOException {
+    PackedBoard board = new PackedBoard(7, 3);
+    new WilsonGenerator().generate(board, new Random(4));
+    board.setPowerStation(0, true);
+    board.bfs(0);
+    File file = File.createTempFile("lightemall", ".png");
+    RasterRenderer.renderToPng(board, 10, file);
+
+    java.awt.image.BufferedImage image = javax.imageio.ImageIO.read(file);
+    t.checkExpect(image.getWidth(), 70);
+    t.checkExpect(image.getHeight(), 30);
+
+    // a batch of boards of one size shares one renderer, and every board
+    // comes out as a renderer of its own would draw it
+    RasterRenderer renderer = null;
+    RasterRenderer first = null;
+    File alone = File.createTempFile("lightemall", ".png");
+    for (int i = 0; i < 3; i++) {
+      PackedBoard next = new PackedBoard(7, 3);
+      new KruskalGenerator().generate(next, new Random(i));
+      next.randomize(new Random(i));
+      next.setPowerStation(0, true);
+      next.bfs(0);
+      renderer = RasterRenderer.renderToPng(next, 10, file, renderer);
+      first = first == null ? renderer : first;
+      t.checkExpect(renderer == first, true);
+      RasterRenderer.renderToPng(next, 10, alone);
+      java.awt.image.BufferedImage shared = javax.imageio.ImageIO.read(file);
+      java.awt.image.BufferedImage own = javax.imageio.ImageIO.read(alone);
+      t.checkExpect(shared.getRGB(0, 0, 70, 30, null, 0, 70),
+          own.getRGB(0, 0, 70, 30, null, 0, 70));
+    }
+    t.checkExpect(RasterRenderer.renderToPng(board, 20, file, renderer) == renderer, false);
+    alone.delete();
+    file.delete();
+  }
+
+  // * Tests for the viewport *//
+
+  // test only the tiles inside the view are drawn
+  void testViewport(Tester t) {
+    this.initConditions();
+    LightEmAll big = new LightEmAll(60, 40, new Random(2), true);
+    big.useViewport(4, 3);
+    big.scroll(10, 20);
+    t.checkExpect(big.camCol, 10);
+    t.checkExpect(big.camRow, 20);
+
+    WorldImage[] cols = new WorldImage[4];
+    for (int i = 0; i < 4; i++) {
+      ArrayList<GamePiece> col = new ArrayList<GamePiece>(
+          big.board.get(10 + i).subList(20, 23));
+      cols[i] = big.drawCol(col, big.size);
+    }
+    WorldScene scene = new WorldScene(200, 150);
+    scene.placeImageXY(LightEmAll.besideAll(cols, 0, 4), 100, 75);
+    t.checkExpect(big.makeScene(), scene);
+
+    // the view stays on the board
+    big.scroll(100, -100);
+    t.checkExpect(big.camCol, 56);
+    t.checkExpect(big.camRow, 0);
+    big.onKeyEvent("a");
+    big.onKeyEvent("s");
+    t.checkExpect(big.camCol, 55);
+    t.checkExpect(big.camRow, 1);
+
+    // dragging left one tile and up two moves the view right and down
+    big.onMousePressed(new Posn(150, 140));
+    big.onMouseReleased(new Posn(100, 40));
+    t.checkExpect(big.camCol, 56);
+    t.checkExpect(big.camRow, 3);
+  }
+
+  // test the winning text is centered in the view rather than the board
+  void testViewportWin(Tester t) {
+    LightEmAll big = new LightEmAll(12, 10, new Random(3), true);
+    big.useViewport(4, 3);
+    while (big.hints().next() != -1) {
+      big.hint();
+    }
+    t.checkExpect(big.gameOver, true);
+    WorldScene scene = big.makeScene();
+    scene.placeImageXY(new TextImage("YOU WIN", 50, Color.green), 100, 37);
+    scene.placeImageXY(new TextImage("Time Taken: " + big.time + " seconds", 50, Color.red),
+        100, 75);
+    scene.placeImageXY(new TextImage("Number of Clicks: " + big.numClicks, 50, Color.red),
+        100, 112);
+    t.checkExpect(big.worldEnds().lastScene, scene);
+  }
+
+  // test clicks go through the camera offset
+  void testViewportClick(Tester t) {
+    LightEmAll big = new LightEmAll(30, 30, new Random(2), true);
+    big.useViewport(5, 5);
+    big.scroll(7, 9);
+    GamePiece target = big.board.get(8).get(11);
+    int before = target.connections();
+    big.onMouseClicked(new Posn(75, 125));
+    t.checkExpect(target.connections(), Board.rotate(before));
+  }
+
+  // * Tests for Board *//
+
+  // test connections and setConnections
+  void testConnections(Tester t) {
+    GamePiece gp = new GamePiece(0, 0, true, false, true, false, false);
+    t.checkExpect(gp.connections(), Board.LEFT | Board.TOP);
+    gp.setConnections(Board.RIGHT | Board.BOTTOM);
+    t.checkExpect(gp, new GamePiece(0, 0, false, true, false, true, false));
+  }
+
+  // test rotate and opposite
+  void testRotateMask(Tester t) {
+    t.checkExpect(Board.rotate(Board.TOP), Board.RIGHT);
+    t.checkExpect(Board.rotate(Board.LEFT), Board.TOP);
+    t.checkExpect(Board.rotate(Board.TOP | Board.LEFT), Board.TOP | Board.RIGHT);
+    t.checkExpect(Board.opposite(Board.LEFT), Board.RIGHT);
+    t.checkExpect(Board.opposite(Board.BOTTOM), Board.TOP);
+  }
+
+  // test the packed board against the board of game pieces
+  void testPackedBoard(Tester t) {
+    this.initConditions();
+    PackedBoard packed = new PackedBoard(this.lem3.board, 8, 9);
+
+    t.checkExpect(packed.toPieces(), this.lem3.board);
+    t.checkExpect(packed.isPowerStation(packed.cellAt(4, 4)), true);
+    t.checkExpect(packed.neighbor(packed.cellAt(0, 0), Board.LEFT), -1);
+    t.checkExpect(packed.neighbor(packed.cellAt(0, 0), Board.BOTTOM), packed.cellAt(0, 1));
+
+    packed.rotateClockwise(packed.cellAt(1, 1));
+    this.lem3.board.get(1).get(1).rotateClockwise();
+    t.checkExpect(packed.pieceAt(1, 1), this.lem3.board.get(1).get(1));
+    // the game picks up a change made to its pieces on the next bfs
+    this.lem3.bfs();
+    t.checkExpect(this.lem3.grid().pieceAt(1, 1), this.lem3.board.get(1).get(1));
+
+    packed.randomize(new Random(3));
+    this.lem3.randomize(new Random(3));
+    packed.bfs(packed.cellAt(4, 4));
+    this.lem3.bfs();
+    t.checkExpect(packed.toPieces(), this.lem3.board);
+    t.checkExpect(packed.isGameOver(), this.lem3.gameOver);
+  }
+
+  // test the game keeps one packed board and its pieces show it after moves
+  void testPiecesShowGrid(Tester t) {
+    LightEmAll game = new LightEmAll(6, 5, new Random(8), true);
+    PackedBoard grid = game.grid();
+    t.checkExpect(game.grid() == grid, true);
+    t.checkExpect(game.engine.board == grid, true);
+    t.checkExpect(grid.toPieces(), game.board);
+    GamePiece corner = game.board.get(2).get(3);
+    game.click(2, 3);
+    game.click(0, 0);
+    game.onKeyEvent("h");
+    t.checkExpect(game.board.get(2).get(3) == corner, true);
+    t.checkExpect(grid.toPieces(), game.board);
+    game.onKeyEvent("down");
+    game.onKeyEvent("right");
+    t.checkExpect(grid.toPieces(), game.board);
+    t.checkExpect(grid.isPowerStation(grid.cellAt(game.powerCol, game.powerRow)), true);
+  }
+
+  // test searchHelp and connectEdges on a packed board
+  void testPackedSearchHelp(Tester t) {
+    this.initConditions();
+    PackedBoard packed = new PackedBoard(2, 2);
+    packed.connectEdges(this.kruskalSmall.mst);
+
+    t.checkExpect(packed.connections(packed.cellAt(1, 1)), Board.LEFT | Board.TOP);
+    t.checkExpect(packed.searchHelp(1, 1, Board.LEFT), packed.cellAt(0, 1));
+    t.checkExpect(packed.searchHelp(1, 1, Board.RIGHT), -1);
+    t.checkExpect(packed.searchHelp(1, 0, Board.LEFT), -1);
+
+    packed.bfs(0);
+    t.checkExpect(packed.isGameOver(), true);
+  }
+
+  // test IntRing wraps around its buffer
+  void testIntRing(Tester t) {
+    IntRing ring = new IntRing(3);
+    ring.add(1);
+    ring.add(2);
+    t.checkExpect(ring.remove(), 1);
+    ring.add(3);
+    ring.add(4);
+    t.checkExpect(ring.remove(), 2);
+    t.checkExpect(ring.remove(), 3);
+    t.checkExpect(ring.remove(), 4);
+    t.checkExpect(ring.isEmpty(), true);
+  }
+
+  // test the packed bfs powers the same cells as the GamePiece bfs
+  void testPackedBfs(Tester t) {
+    Random rand = new Random(11);
+    for (int trial = 0; trial < 20; trial++) {
+      int width = 1 + rand.nextInt(7);
+      int height = 1 + rand.nextInt(7);
+      LightEmAll game = new LightEmAll(width, height, new Random(trial), trial % 2 == 0);
+      PackedBoard packed = new PackedBoard(game.board, width, height);
+      PieceBoard pieces = new PieceBoard(game.board, width, height);
+      int source = rand.nextInt(packed.cells());
+
+      packed.bfs(source);
+      pieces.bfs(source, new IntRing(pieces.cells()));
+      t.checkExpect(packed.toPieces(), game.board);
+    }
+  }
+
+  // * Tests for PowerPropagator *//
+
+  // test that rotating a piece only changes the power of the cut subtree
+  void testPropagatorRotate(Tester t) {
+    this.initConditions();
+    PackedBoard packed = new PackedBoard(2, 2);
+    packed.connectEdges(this.kruskalSmall.mst);
+    PowerPropagator power = new PowerPropagator(packed, 0);
+    t.checkExpect(packed.isGameOver(), true);
+    t.checkExpect(power.changedCount, 4);
+
+    // cutting (0, 1) off (0, 0) un-powers everything below it
+    power.rotate(packed.cellAt(0, 1));
+    t.checkExpect(packed.isPowered(packed.cellAt(0, 0)), true);
+    t.checkExpect(packed.isPowered(packed.cellAt(0, 1)), false);
+    t.checkExpect(packed.isPowered(packed.cellAt(1, 1)), false);
+    t.checkExpect(packed.isPowered(packed.cellAt(1, 0)), false);
+    t.checkExpect(power.changedCount, 3);
+
+    // facing left and up again it only gets its own power back
+    power.rotate(packed.cellAt(0, 1));
+    power.rotate(packed.cellAt(0, 1));
+    t.checkExpect(packed.isPowered(packed.cellAt(0, 1)), true);
+    t.checkExpect(power.changedCount, 1);
+
+    // one more turn re-connects the rest of the tree
+    power.rotate(packed.cellAt(0, 1));
+    t.checkExpect(packed.isGameOver(), true);
+    t.checkExpect(power.changedCount, 2);
+  }
+
+  // test moving the station re-roots the power tree without changing power
+  void testPropagatorMoveStation(Tester t) {
+    this.initConditions();
+    PackedBoard packed = new PackedBoard(2, 2);
+    packed.connectEdges(this.kruskalSmall.mst);
+    packed.setPowerStation(0, true);
+    PowerPropagator power = new PowerPropagator(packed, 0);
+
+    power.moveStation(packed.cellAt(0, 1));
+    power.moveStation(packed.cellAt(1, 1));
+    t.checkExpect(power.station, packed.cellAt(1, 1));
+    t.checkExpect(packed.isPowerStation(0), false);
+    t.checkExpect(packed.isPowerStation(packed.cellAt(1, 1)), true);
+    t.checkExpect(packed.isGameOver(), true);
+    t.checkExpect(power.parent[0], packed.cellAt(0, 1));
+
+    // cutting (0, 0) off now only un-powers (0, 0)
+    power.rotate(0);
+    t.checkExpect(packed.isPowered(0), false);
+    t.checkExpect(packed.isPowered(packed.cellAt(1, 0)), true);
+  }
+
+  // randomized differential test of the propagator against a full bfs on
+  // spanning-tree boards and on random boards with cycles
+  void testPropagatorMatchesBfs(Tester t) {
+    Random rand = new Random(7);
+    for (int trial = 0; trial < 40; trial++) {
+      int width = 1 + rand.nextInt(9);
+      int height = 1 + rand.nextInt(9);
+      PackedBoard incremental;
+      if (trial % 2 == 0) {
+        incremental = new PackedBoard(
+            new LightEmAll(width, height, new Random(trial), true).board, width, height);
+      }
+      else {
+        incremental = new PackedBoard(width, height);
+        for (int i = 0; i < incremental.cells(); i++) {
+          incremental.setConnections(i, rand.nextInt(16));
+        }
+      }
+      int station = rand.nextInt(incremental.cells());
+      PowerPropagator power = new PowerPropagator(incremental, station);
+      PackedBoard full = new PackedBoard(width, height);
+      boolean same = true;
+
+      for (int step = 0; step < 300; step++) {
+        boolean[] before = new boolean[incremental.cells()];
+        for (int i = 0; i < before.length; i++) {
+          before[i] = incremental.isPowered(i);
+        }
+        int cell = rand.nextInt(incremental.cells());
+        int dir = Board.DIRECTIONS[rand.nextInt(4)];
+        int to = incremental.searchHelp(incremental.colOf(power.station),
+            incremental.rowOf(power.station), dir);
+        if (step % 5 == 0 && to != -1) {
+          power.moveStation(to);
+        }
+        else {
+          power.rotate(cell);
+        }
+
+        System.arraycopy(incremental.cells, 0, full.cells, 0, full.cells.length);
+        full.bfs(power.station);
+        same = same && Arrays.equals(incremental.cells, full.cells);
+
+        int flipped = 0;
+        for (int i = 0; i < before.length; i++) {
+          if (before[i] != incremental.isPowered(i)) {
+            flipped++;
+          }
+        }
+        same = same && flipped == power.changedCount;
+        for (int i = 0; i < power.changedCount; i++) {
+          same = same && before[power.changed[i]] != incremental.isPowered(power.changed[i]);
+        }
+      }
+      t.checkExpect(same, true);
+    }
+  }
+
+  // * Tests for PuzzleSolver *//
+
+  // returns whether the given board is wired as a spanning tree
+  boolean isTree(Board board) {
+    int ends = 0;
+    for (int cell = 0; cell < board.cells(); cell++) {
+      ends += Integer.bitCount(board.connections(cell));
+    }
+    board.bfs(0);
+    return ends == 2 * (board.cells() - 1) && board.isGameOver();
+  }
+
+  // test the solver on scrambled boards from every generator
+  void testSolverGenerated(Tester t) {
+    PuzzleGenerator[] generators = {new KruskalGenerator(), new WilsonGenerator(),
+        new PrimGenerator(), new BacktrackerGenerator()};
+    boolean solved = true;
+    for (PuzzleGenerator generator : generators) {
+      for (int side = 1; side < 30; side += 7) {
+        PackedBoard board = new PackedBoard(side, side + 2);
+        Random r = new Random(side);
+        generator.generate(board, r);
+        board.randomize(r);
+        PuzzleSolver solver = new PuzzleSolver(board);
+        solved = solved && solver.solve();
+        solver.apply(board);
+        solved = solved && this.isTree(board);
+      }
+    }
+    t.checkExpect(solved, true);
+  }
+
+  // test that turns gives the rotations from the scrambled board to the solution
+  void testSolverTurns(Tester t) {
+    LightEmAll game = new LightEmAll(6, 5, new Random(3), true);
+    PuzzleSolver solver = new PuzzleSolver(game.grid());
+    t.checkExpect(solver.solve(), true);
+    for (int cell = 0; cell < solver.cells; cell++) {
+      for (int k = 0; k < solver.turns(cell); k++) {
+        game.click(game.grid().colOf(cell), game.grid().rowOf(cell));
+      }
+    }
+    t.checkExpect(game.gameOver, true);
+    t.checkExpect(game.grid().connections(7), solver.solvedMask(7));
+  }
+
+  // test boards with no solution, and the non-tree mode
+  void testSolverUnsolvable(Tester t) {
+    PackedBoard single = new PackedBoard(1, 1);
+    single.setConnections(0, Board.TOP);
+    t.checkExpect(new PuzzleSolver(single).solve(), false);
+
+    // four dead ends can only pair up
+    PackedBoard ends = new PackedBoard(2, 2);
+    for (int cell = 0; cell < 4; cell++) {
+      ends.setConnections(cell, Board.LEFT);
+    }
+    t.checkExpect(new PuzzleSolver(ends).solve(), false);
+
+    // four corners can only make a cycle
+    PackedBoard corners = new PackedBoard(2, 2);
+    for (int cell = 0; cell < 4; cell++) {
+      corners.setConnections(cell, Board.TOP | Board.RIGHT);
+    }
+    t.checkExpect(new PuzzleSolver(corners).solve(), false);
+    PuzzleSolver loose = new PuzzleSolver(corners, false);
+    t.checkExpect(loose.solve(), true);
+    loose.apply(corners);
+    corners.bfs(0);
+    t.checkExpect(corners.isGameOver(), true);
+    t.checkExpect(corners.connections(0), Board.RIGHT | Board.BOTTOM);
+  }
+
+  // test that the solver finds no more solutions than there are, and that
+  // guessing is only needed where the board is ambiguous
+  void testSolverCount(Tester t) {
+    // a straight line has one solution and needs no guesses
+    PackedBoard line = new PackedBoard(4, 1);
+    line.setConnections(0, Board.TOP);
+    line.setConnections(1, Board.TOP | Board.BOTTOM);
+    line.setConnections(2, Board.TOP | Board.BOTTOM);
+    line.setConnections(3, Board.BOTTOM);
+    PuzzleSolver solver = new PuzzleSolver(line);
+    t.checkExpect(solver.count(10), 1);
+    t.checkExpect(solver.branches, 0L);
+
+    // a cross ringed by corners and dead ends is a pinwheel that can turn
+    // either way
+    PackedBoard pinwheel = new PackedBoard(3, 3);
+    int[] masks = {4, 3, 2, 6, 15, 9, 8, 12, 1};
+    for (int cell = 0; cell < 9; cell++) {
+      pinwheel.setConnections(cell, masks[cell]);
+    }
+    t.checkExpect(new PuzzleSolver(pinwheel).count(10), 2);
+    t.checkExpect(new PuzzleSolver(pinwheel).count(1), 1);
+  }
+
+  // test the parallel solver, by regions and by the split search
+  void testParallelSolver(Tester t) {
+    PuzzleGenerator[] generators = {new KruskalGenerator(), new PrimGenerator(),
+        new BacktrackerGenerator()};
+    boolean solved = true;
+    for (PuzzleGenerator generator : generators) {
+      for (int side = 2; side < 40; side += 9) {
+        PackedBoard board = new PackedBoard(side + 1, side);
+        Random r = new Random(side);
+        generator.generate(board, r);
+        board.randomize(r);
+        ParallelSolver byRegions = new ParallelSolver(ForkJoinPool.commonPool(), board);
+        solved = solved && byRegions.solve() && !byRegions.fellBack;
+        ParallelSolver split = new ParallelSolver(ForkJoinPool.commonPool(), board);
+        solved = solved && split.prepare() && split.searchAll();
+        byRegions.apply(board);
+        solved = solved && this.isTree(board);
+      }
+    }
+    t.checkExpect(solved, true);
+  }
+
+  // test the parallel solver on boards with none or several solutions
+  void testParallelSolverEdgeCases(Tester t) {
+    PackedBoard corners = new PackedBoard(2, 2);
+    for (int cell = 0; cell < 4; cell++) {
+      corners.setConnections(cell, Board.TOP | Board.RIGHT);
+    }
+    t.checkExpect(new ParallelSolver(ForkJoinPool.commonPool(), corners).solve(), false);
+    ParallelSolver split = new ParallelSolver(ForkJoinPool.commonPool(), corners, false);
+    t.checkExpect(split.prepare() && split.searchAll(), true);
+    t.checkExpect(split.turns(0), 1);
+
+    PackedBoard pinwheel = new PackedBoard(3, 3);
+    int[] masks = {4, 3, 2, 6, 15, 9, 8, 12, 1};
+    for (int cell = 0; cell < 9; cell++) {
+      pinwheel.setConnections(cell, masks[cell]);
+    }
+    ParallelSolver solver = new ParallelSolver(ForkJoinPool.commonPool(), pinwheel);
+    t.checkExpect(solver.solve(), true);
+    t.checkExpect(solver.regions, 1);
+    solver.apply(pinwheel);
+    t.checkExpect(this.isTree(pinwheel), true);
+  }
+
+  // test that refuted turns are shared and skipped
+  void testRefute(Tester t) {
+    AtomicIntegerArray refuted = new AtomicIntegerArray(3);
+    PuzzleSolver.refute(refuted, 1, 2);
+    PuzzleSolver.refute(refuted, 1, 8);
+    t.checkExpect(refuted.get(1), 10);
+    t.checkExpect(refuted.get(0), 0);
+
+    // refuting the solution's turns leaves nothing to find
+    PackedBoard line = new PackedBoard(2, 1);
+    line.setConnections(0, Board.LEFT);
+    line.setConnections(1, Board.LEFT);
+    PuzzleSolver solver = new PuzzleSolver(line);
+    solver.init();
+    solver.refuted = new AtomicIntegerArray(2);
+    PuzzleSolver.refute(solver.refuted, 0, 15);
+    t.checkExpect(solver.dropRefuted(), false);
+  }
+
+  // test rating boards for uniqueness and difficulty, reusing one solver
+  void testPuzzleRater(Tester t) {
+    PuzzleRater rater = new PuzzleRater();
+    PackedBoard line = new PackedBoard(4, 1);
+    line.setConnections(0, Board.TOP);
+    line.setConnections(1, Board.TOP | Board.BOTTOM);
+    line.setConnections(2, Board.TOP | Board.BOTTOM);
+    line.setConnections(3, Board.BOTTOM);
+    Rating rating = rater.rate(line);
+    t.checkExpect(rating.isUnique(), true);
+    t.checkExpect(rating.level(), Rating.EASY);
+    t.checkExpect(rating.forced, 4);
+    t.checkExpect(rating.branches, 0L);
+
+    PackedBoard pinwheel = new PackedBoard(3, 3);
+    int[] masks = {4, 3, 2, 6, 15, 9, 8, 12, 1};
+    for (int cell = 0; cell < 9; cell++) {
+      pinwheel.setConnections(cell, masks[cell]);
+    }
+    rating = rater.rate(pinwheel);
+    t.checkExpect(rating.solutions, 2);
+    t.checkExpect(rating.isUnique(), false);
+    t.checkExpect(rating.level(), Rating.HARD);
+    t.checkExpect(rater.rate(pinwheel, 1).solutions, 1);
+
+    // a search out of guesses cannot tell whether a board is unique
+    PuzzleSolver solver = new PuzzleSolver(pinwheel);
+    solver.budget = 0;
+    t.checkExpect(solver.count(2), 0);
+    t.checkExpect(solver.exhausted, true);
+    Rating cut = new Rating(1, true, 0, 0, 0, 0, 0);
+    t.checkExpect(cut.isUnique(), false);
+    t.checkExpect(cut.level(), Rating.HARD);
+
+    PackedBoard corners = new PackedBoard(3, 3);
+    for (int cell = 0; cell < 9; cell++) {
+      corners.setConnections(cell, Board.TOP | Board.RIGHT);
+    }
+    t.checkExpect(rater.rate(corners).solutions, 0);
+
+    // a solver kept from an earlier board of the same size gives the same
+    // rating as a fresh one
+    PackedBoard board = new PackedBoard(12, 12);
+    Random r = new Random(5);
+    new KruskalGenerator().generate(board, r);
+    board.randomize(r);
+    Rating again = rater.rate(board);
+    t.checkExpect(again.summary(), new PuzzleRater().rate(board).summary());
+    t.checkExpect(again.solutions > 0, true);
+  }
+
+  // test the constant-time set of ints
+  void testIntSet(Tester t) {
+    IntSet set = new IntSet(5);
+    set.add(3);
+    set.add(1);
+    set.add(3);
+    t.checkExpect(set.size, 2);
+    t.checkExpect(set.last(), 1);
+    set.remove(3);
+    t.checkExpect(set.contains(3), false);
+    t.checkExpect(set.last(), 1);
+    set.remove(4);
+    set.remove(1);
+    t.checkExpect(set.isEmpty(), true);
+    set.add(0);
+    set.add(2);
+    set.clear();
+    t.checkExpect(set.isEmpty(), true);
+    t.checkExpect(set.contains(2), false);
+  }
+
+  // test that following the hints solves the board in the clicks they count
+  void testHints(Tester t) {
+    LightEmAll game = new LightEmAll(7, 6, new Random(4), true);
+    HintEngine hints = game.hints();
+    int remaining = hints.clicksRemaining();
+    int total = 0;
+    for (int cell = 0; cell < 42; cell++) {
+      total += hints.turns(cell);
+    }
+    t.checkExpect(remaining, total);
+    t.checkExpect(game.grid().isPowered(hints.next()), true);
+
+    // a click the hints did not ask for costs three more
+    int cell = game.grid().cellAt(3, 3);
+    int before = hints.turns(cell);
+    game.onMouseClicked(new Posn(175, 175));
+    t.checkExpect(hints.turns(cell), (before + 3) % 4);
+    t.checkExpect(hints.clicksRemaining(), remaining + (before + 3) % 4 - before);
+
+    int clicks = game.numClicks;
+    remaining = hints.clicksRemaining();
+    while (hints.next() != -1) {
+      game.onKeyEvent("h");
+    }
+    t.checkExpect(game.numClicks, clicks + remaining);
+    t.checkExpect(hints.clicksRemaining(), 0);
+    t.checkExpect(game.gameOver, true);
+    t.checkExpect(game.hints().next(), -1);
+
+    // scrambling the board from outside is picked up by bfs
+    game.randomize(new Random(8));
+    game.bfs();
+    t.checkExpect(hints.clicksRemaining() > 0, true);
+  }
+
+  // test hints for boards with no tree, which are solved instead
+  void testHintsSolved(Tester t) {
+    LightEmAll game = new LightEmAll(5, 5, new Random(2), false);
+    t.checkExpect(game.tree, null);
+    HintEngine hints = game.hints();
+    while (hints.next() != -1) {
+      game.hint();
+    }
+    t.checkExpect(game.gameOver, true);
+
+    // two dead ends, one of them a turn away from facing the other
+    PackedBoard line = new PackedBoard(1, 2);
+    line.setConnections(0, Board.RIGHT);
+    line.setConnections(1, Board.TOP);
+    HintEngine lineHints = HintEngine.fromSolver(line);
+    t.checkExpect(lineHints.clicksRemaining(), 1);
+    t.checkExpect(lineHints.next(), 0);
+    t.checkExpect(HintEngine.NEED[Board.TOP][Board.LEFT], 3);
+    t.checkExpect(HintEngine.NEED[Board.TOP][Board.TOP | Board.LEFT], -1);
+
+    PackedBoard corners = new PackedBoard(2, 2);
+    for (int cell = 0; cell < 4; cell++) {
+      corners.setConnections(cell, Board.TOP | Board.RIGHT);
+    }
+    t.checkExpect(HintEngine.fromSolver(corners), null);
+  }
+
+  // test that targets the pieces cannot be turned into are refused rather
+  // than counted as reached, and that a solve for hints gives up in time
+  void testHintsMismatch(Tester t) {
+    PackedBoard board = new PackedBoard(3, 3);
+    long[] tree = new KruskalGenerator().generate(board, new Random(1));
+    int leaf = 0;
+    while (Integer.bitCount(board.connections(leaf)) != 1) {
+      leaf++;
+    }
+    board.setConnections(leaf, board.connections(leaf) | Board.rotate(board.connections(leaf)));
+    try {
+      HintEngine.fromTree(board, tree);
+      t.checkExpect("no exception", "an exception");
+    }
+    catch (IllegalArgumentException e) {
+      t.checkExpect(e.getMessage(), "cell " + leaf + " is not a turn of its target");
+    }
+    GameEngine engine = new GameEngine(board, 1, 1);
+    engine.tree = tree;
+    HintEngine solved = HintEngine.fromSolver(board);
+    t.checkExpect(engine.hints() == null, solved == null);
+
+    // a board that needs guessing has no hints when no guess is allowed
+    PuzzleRater rater = new PuzzleRater();
+    Random r = new Random(5);
+    PackedBoard hard = new PackedBoard(8, 8);
+    for (int i = 0; i < 50 && rater.rate(hard).branches == 0; i++) {
+      hard = new PackedBoard(8, 8);
+      new KruskalGenerator().generate(hard, r);
+      hard.randomize(r);
+    }
+    t.checkExpect(rater.rate(hard).branches > 0, true);
+    t.checkExpect(HintEngine.fromSolver(hard, 0), null);
+    t.checkExpect(HintEngine.fromSolver(hard) != null, true);
+  }
+
+  // * Tests for the headless engine *//
+
+  // test playing a packed board with no game around it
+  void testGameEngine(Tester t) {
+    PackedBoard board = new PackedBoard(3, 2);
+    long[] tree = new KruskalGenerator().generate(board, new Random(3));
+    GameEngine engine = new GameEngine(board, 1, 1);
+    engine.tree = tree;
+    t.checkExpect(board.isPowerStation(board.cellAt(1, 1)), true);
+    t.checkExpect(engine.isSolved(), true);
+
+    t.checkExpect(engine.rotate(3, 0), false);
+    t.checkExpect(engine.rotate(0, -1), false);
+    t.checkExpect(engine.numClicks, 0);
+    t.checkExpect(engine.rotate(0, 0), true);
+    t.checkExpect(engine.numClicks, 1);
+    t.checkExpect(engine.isSolved(), false);
+    t.checkExpect(engine.hints().clicksRemaining(), 3);
+    while (engine.hint()) {
+      t.checkExpect(engine.numClicks <= 4, true);
+    }
+    t.checkExpect(engine.isSolved(), true);
+
+    // the station only moves along wires that meet
+    int moved = 0;
+    for (int dir = Board.TOP; dir <= Board.LEFT; dir <<= 1) {
+      int next = board.searchHelp(1, 1, dir);
+      boolean ok = engine.movePower(dir);
+      t.checkExpect(ok, next != -1);
+      if (ok) {
+        moved++;
+        t.checkExpect(board.cellAt(engine.powerCol, engine.powerRow), next);
+        t.checkExpect(board.isPowerStation(next), true);
+        t.checkExpect(engine.movePower(Board.opposite(dir)), true);
+      }
+    }
+    t.checkExpect(moved > 0, true);
+    t.checkExpect(engine.powerCol, 1);
+    t.checkExpect(engine.isSolved(), true);
+  }
+
+  // test that the station never moves for anything but a single direction,
+  // even where a mix of directions would pass for one wired both ways
+  void testGameEngineBadMoves(Tester t) {
+    PackedBoard board = new PackedBoard(2, 2);
+    board.setConnections(board.cellAt(0, 1), Board.TOP);
+    board.setConnections(board.cellAt(1, 1), Board.BOTTOM);
+    board.setConnections(board.cellAt(0, 0), Board.BOTTOM);
+    GameEngine engine = new GameEngine(board, 0, 1);
+    for (int dir : new int[] {3, 0, -1, Board.RIGHT | Board.TOP, 16, Integer.MIN_VALUE}) {
+      t.checkExpect(engine.movePower(dir), false);
+      t.checkExpect(engine.powerCol, 0);
+      t.checkExpect(engine.powerRow, 1);
+    }
+    t.checkExpect(engine.movePower(Board.TOP), true);
+    t.checkExpect(engine.powerRow, 0);
+  }
+
+  // test that the engine's powered count agrees with a look at every cell
+  // after every move, on a tree board and on a board with loops and loose ends
+  void testWinCounters(Tester t) {
+    PackedBoard tree = new PackedBoard(5, 4);
+    new WilsonGenerator().generate(tree, new Random(2));
+    PackedBoard loose = new PackedBoard(5, 4);
+    Random r = new Random(3);
+    for (int cell = 0; cell < 20; cell++) {
+      loose.setConnections(cell, r.nextInt(16));
+    }
+    for (PackedBoard board : new PackedBoard[] {tree, loose}) {
+      GameEngine engine = new GameEngine(board, 2, 1);
+      t.checkExpect(engine.isSolved(), board.isGameOver());
+      for (int k = 0; k < 400; k++) {
+        if (k % 4 == 3) {
+          engine.movePower(1 << r.nextInt(4));
+        }
+        else {
+          engine.rotate(r.nextInt(5), r.nextInt(4));
+        }
+        int powered = 0;
+        for (int cell = 0; cell < 20; cell++) {
+          powered += board.isPowered(cell) ? 1 : 0;
+        }
+        t.checkExpect(engine.power.poweredCount, powered);
+        t.checkExpect(engine.isSolved(), board.isGameOver());
+      }
+    }
+    GameEngine solved = new GameEngine(tree, 0, 0);
+    while (solved.hint()) {
+      t.checkExpect(solved.numClicks <= 60, true);
+    }
+    t.checkExpect(solved.isSolved(), true);
+    t.checkExpect(solved.power.poweredCount, 20);
+  }
+
+  // test that the game draws what its engine plays
+  void testLightEmAllEngine(Tester t) {
+    LightEmAll game = new LightEmAll(4, 4, new Random(9), true);
+    t.checkExpect(game.engine.board.connections(5), game.board.get(1).get(1).connections());
+    game.onMouseClicked(new Posn(75, 75));
+    t.checkExpect(game.engine.numClicks, 1);
+    t.checkExpect(game.numClicks, 1);
+    t.checkExpect(game.engine.board.connections(5), game.board.get(1).get(1).connections());
+    t.checkExpect(game.gameOver, game.engine.isSolved());
+    game.onMouseClicked(new Posn(500, 75));
+    t.checkExpect(game.numClicks, 1);
+  }
+
+  // test that a session on the game server sends every tile its commands
+  // change, by keeping a copy of its board from the answers alone and
+  // playing the same commands on an engine of our own
+  void testGameServer(Tester t) throws IOException, InterruptedException {
+    GameServer server = new GameServer(0, 3, 3);
+    server.start();
+    PackedBoard board = new PackedBoard(3, 3);
+    Random r = new Random(0);
+    new KruskalGenerator().generate(board, r);
+    board.randomize(r);
+    GameEngine engine = new GameEngine(board, 0, 0);
+    try (Socket socket = new Socket("127.0.0.1", server.port())) {
+      DataInputStream in = new DataInputStream(socket.getInputStream());
+      DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+      t.checkExpect(in.readInt(), 3);
+      t.checkExpect(in.readInt(), 3);
+      byte[] cells = new byte[9];
+      in.readFully(cells);
+      t.checkExpect(cells, board.cells);
+      Random moves = new Random(1);
+      for (int k = 0; k < 200; k++) {
+        if (k % 5 == 4) {
+          int dir = 1 << moves.nextInt(4);
+          out.write(GameServer.MOVE);
+          out.writeByte(dir);
+          engine.movePower(dir);
+        }
+        else {
+          int col = moves.nextInt(3);
+          int row = moves.nextInt(3);
+          out.write(GameServer.ROTATE);
+          out.writeInt(col);
+          out.writeInt(row);
+          engine.rotate(col, row);
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+          int cell = in.readInt();
+          cells[cell] = in.readByte();
+        }
+        t.checkExpect(in.readByte() == 1, engine.isSolved());
+      }
+      t.checkExpect(cells, board.cells);
+      out.write(GameServer.ROTATE);
+      out.writeInt(3);
+      out.writeInt(0);
+      t.checkExpect(in.readInt(), 0);
+      t.checkExpect(in.readByte() == 1, engine.isSolved());
+      for (int dir : new int[] {3, 0, -1, 16}) {
+        out.write(GameServer.MOVE);
+        out.writeByte(dir);
+        t.checkExpect(in.readInt(), 0);
+        t.checkExpect(in.readByte() == 1, engine.isSolved());
+      }
+      out.write(GameServer.QUIT);
+      t.checkExpect(in.read(), -1);
+    }
+
+    LoadClient client = new LoadClient("127.0.0.1", server.port(), 20, 30);
+    client.run();
+    t.checkExpect(client.failures.get(), 0);
+    t.checkExpect(client.percentile(0) > 0, true);
+    t.checkExpect(client.percentile(50) <= client.percentile(99), true);
+
+    // closing the server ends a session blocked reading its connection
+    try (Socket socket = new Socket("127.0.0.1", server.port())) {
+      DataInputStream in = new DataInputStream(socket.getInputStream());
+      t.checkExpect(in.readInt(), 3);
+      server.close();
+      in.skipBytes(4 + 9);
+      t.checkExpect(in.read(), -1);
+    }
+    for (int i = 0; i < 100 && server.open.get() > 0; i++) {
+      Thread.sleep(10);
+    }
+    t.checkExpect(server.open.get(), 0);
+
+    // a connection no session can take is closed, and the server goes on
+    GameServer stopping = new GameServer(0, 3, 3);
+    stopping.start();
+    stopping.sessions.shutdown();
+    for (int i = 0; i < 2; i++) {
+      try (Socket socket = new Socket("127.0.0.1", stopping.port())) {
+        t.checkExpect(socket.getInputStream().read(), -1);
+      }
+    }
+    t.checkExpect(stopping.acceptor.isAlive(), true);
+    t.checkExpect(stopping.open.get(), 0);
+    t.checkExpect(stopping.clients.isEmpty(), true);
+    stopping.close();
+
+    // sessions that never got an answer leave no times behind
+    LoadClient refused = new LoadClient("127.0.0.1", server.port(), 3, 5);
+    refused.run();
+    t.checkExpect(refused.failures.get(), 3);
+    t.checkExpect(refused.percentile(50), 0.0);
+  }
+
+  // test that a batch too big for one array is refused rather than wrapped
+  void testBatchEnvTooBig(Tester t) {
+    String message = "";
+    try {
+      new BatchEnv(ForkJoinPool.commonPool(), 5000, 1000, 1000);
+    }
+    catch (IllegalArgumentException e) {
+      message = e.getMessage();
+    }
+    t.checkExpect(message, "cannot hold 5000 boards of 1000x1000 in one array");
+    message = "";
+    try {
+      new BatchEnv(ForkJoinPool.commonPool(), 2, 0, 3);
+    }
+    catch (IllegalArgumentException e) {
+      message = e.getMessage();
+    }
+    t.checkExpect(message, "cannot hold 2 boards of 0x3 in one array");
+  }
+
+  // test that a batch of boards plays like an engine on each board
+  void testBatchEnv(Tester t) {
+    BatchEnv env = new BatchEnv(new ForkJoinPool(2), 40, 4, 3);
+    env.reset(new KruskalGenerator(), 7);
+    GameEngine[] engines = new GameEngine[40];
+    for (int b = 0; b < 40; b++) {
+      PackedBoard board = new PackedBoard(4, 3);
+      Random r = new Random(7 + b);
+      new KruskalGenerator().generate(board, r);
+      board.randomize(r);
+      engines[b] = new GameEngine(board, 0, 0);
+      t.checkExpect(env.board(b).cells, board.cells);
+    }
+    Random r = new Random(8);
+    int[] actions = new int[40];
+    for (int k = 0; k < 300; k++) {
+      for (int b = 0; b < 40; b++) {
+        int pick = r.nextInt(12);
+        if (pick == 11) {
+          actions[b] = BatchEnv.NONE;
+        }
+        else if (pick == 10) {
+          int dir = 1 << r.nextInt(4);
+          actions[b] = BatchEnv.move(dir);
+          engines[b].movePower(dir);
+        }
+        else {
+          actions[b] = BatchEnv.rotate(pick);
+          engines[b].rotate(engines[b].board.colOf(pick), engines[b].board.rowOf(pick));
+        }
+      }
+      int solved = env.step(actions);
+      for (int b = 0; b < 40; b++) {
+        solved -= engines[b].isSolved() ? 1 : 0;
+        t.checkExpect(env.solved[b], engines[b].isSolved());
+      }
+      t.checkExpect(solved, 0);
+    }
+    for (int b = 0; b < 40; b++) {
+      PackedBoard board = (PackedBoard) engines[b].board;
+      int powered = 0;
+      for (int cell = 0; cell < 12; cell++) {
+        powered += board.isPowered(cell) ? 1 : 0;
+      }
+      t.checkExpect(env.powered[b], powered);
+      t.checkExpect(env.board(b).cells, board.cells);
+      t.checkExpect(env.station[b], board.cellAt(engines[b].powerCol, engines[b].powerRow));
+    }
+  }
+
+  // * Tests for saving games *//
+
+  // test that a saved game comes back as it was, hints and all
+  void testSaveLoad(Tester t) throws IOException {
+    LightEmAll game = new LightEmAll(7, 5, new Random(6), true);
+    game.onKeyEvent("h");
+    game.onMouseClicked(new Posn(125, 75));
+    game.time = 42;
+    File file = File.createTempFile("lightemall", ".lea");
+    game.save(file);
+    t.checkExpect(file.length(), GameFile.size(35, true));
+
+    LightEmAll loaded = LightEmAll.load(file);
+    t.checkExpect(loaded.board, game.board);
+    t.checkExpect(loaded.powerCol, game.powerCol);
+    t.checkExpect(loaded.time, 42);
+    t.checkExpect(loaded.numClicks, 2);
+    t.checkExpect(loaded.hints().clicksRemaining(), game.hints().clicksRemaining());
+    while (loaded.hints().next() != -1) {
+      loaded.hint();
+    }
+    t.checkExpect(loaded.gameOver, true);
+    file.delete();
+  }
+
+  // test that a saved solution the tiles cannot be turned into is dropped,
+  // leaving the hints to the solver
+  void testLoadBadSolution(Tester t) throws IOException {
+    PackedBoard board = new PackedBoard(3, 2);
+    new KruskalGenerator().generate(board, new Random(8));
+    SavedGame game = new SavedGame(board, 0, 0);
+    game.solution = board.cells.clone();
+    board.randomize(new Random(9));
+    game.solution[0] = (byte) (Board.TOP | Board.RIGHT | Board.BOTTOM | Board.LEFT);
+    File file = File.createTempFile("lightemall", ".lea");
+    GameFile.write(file, game);
+    LightEmAll loaded = LightEmAll.load(file);
+    t.checkExpect(loaded.engine.hints, null);
+    HintEngine hints = loaded.hints();
+    t.checkExpect(hints != null, true);
+    t.checkExpect(hints.target[0] != game.solution[0], true);
+    file.delete();
+  }
+
+  // test the packed layers of boards with an odd number of cells, without a
+  // solution, and files that are not saved games
+  void testGameFile(Tester t) throws IOException {
+    PackedBoard board = new PackedBoard(3, 3);
+    new PrimGenerator().generate(board, new Random(1));
+    board.randomize(new Random(2));
+    SavedGame game = new SavedGame(board, 1, 2);
+    File file = File.createTempFile("lightemall", ".lea");
+    GameFile.write(file, game);
+    t.checkExpect(file.length(), 37L);
+    SavedGame read = GameFile.read(file);
+    t.checkExpect(read.solution, null);
+    t.checkExpect(read.board.isPowerStation(read.board.cellAt(1, 2)), true);
+    read.board.setPowerStation(read.board.cellAt(1, 2), false);
+    t.checkExpect(read.board.cells, board.cells);
+
+    java.nio.file.Files.write(file.toPath(), new byte[40]);
+    String message = "";
+    try {
+      GameFile.read(file);
+    }
+    catch (IOException e) {
+      message = e.getMessage();
+    }
+    t.checkExpect(message.startsWith("not a saved game"), true);
+    file.delete();
+  }
+
+  // test that puzzles come back from an archive by id, seeded or explicit
+  void testPuzzleArchive(Tester t) throws IOException {
+    File file = File.createTempFile("lightemall", ".lear");
+    ArchiveWriter writer = new ArchiveWriter(file);
+    PackedBoard[] boards = new PackedBoard[4];
+    byte[][] solutions = new byte[4][];
+    for (int i = 0; i < 4; i++) {
+      boards[i] = new PackedBoard(5 + i, 4);
+      Random r = new Random(i);
+      long[] tree = PuzzleArchive.GENERATORS[i].generate(boards[i], r);
+      solutions[i] = boards[i].cells.clone();
+      boards[i].randomize(r);
+      t.checkExpect(writer.add(tree, boards[i]), 2 * i);
+      t.checkExpect(writer.addSeeded(i, 5 + i, 4, i), 2 * i + 1);
+    }
+    writer.close();
+
+    PuzzleArchive archive = new PuzzleArchive(file);
+    t.checkExpect(archive.size(), 8);
+    // read out of order, as a server would
+    for (int id = 7; id >= 0; id--) {
+      SavedGame game = archive.get(id);
+      t.checkExpect(game.board.isPowerStation(0), true);
+      game.board.setPowerStation(0, false);
+      t.checkExpect(game.board.cells, boards[id / 2].cells);
+      t.checkExpect(game.solution, solutions[id / 2]);
+    }
+    LightEmAll game = new LightEmAll(archive.get(3));
+    while (game.hints().next() != -1) {
+      game.hint();
+    }
+    t.checkExpect(game.gameOver, true);
+    archive.close();
+
+    String message = "";
+    try {
+      new PuzzleArchive(File.createTempFile("lightemall", ".lear"));
+    }
+    catch (IOException e) {
+      message = e.getMessage();
+    }
+    t.checkExpect(message.startsWith("unexpected end"), true);
+
+    // sizes that are empty, negative or too big to allocate are corrupt
+    ArchiveWriter bad = new ArchiveWriter(file);
+    bad.addSeeded(0, -3, 4, 1);
+    bad.addSeeded(0, 70000, 70000, 1);
+    bad.addSeeded(0, 0, 5, 1);
+    ByteBuffer record = ByteBuffer.allocate(9);
+    record.put(PuzzleArchive.EXPLICIT);
+    record.putInt(-1);
+    record.putInt(5);
+    record.flip();
+    bad.append(record);
+    bad.close();
+    PuzzleArchive corrupt = new PuzzleArchive(file);
+    for (int id = 0; id < 4; id++) {
+      message = "";
+      try {
+        corrupt.get(id);
+      }
+      catch (IOException e) {
+        message = e.getMessage();
+      }
+      t.checkExpect(message.startsWith("corrupt puzzle: bad size"), true);
+    }
+    corrupt.close();
+
+    // records cut short, and offsets that run backwards or past the index
+    ArchiveWriter cut = new ArchiveWriter(file);
+    cut.append(ByteBuffer.wrap(new byte[] {PuzzleArchive.SEEDED, 0, 0}));
+    cut.append(ByteBuffer.wrap(new byte[] {PuzzleArchive.EXPLICIT, 0, 0, 0, 3}));
+    cut.addSeeded(0, 3, 3, 1);
+    cut.addSeeded(0, 3, 3, 2);
+    cut.close();
+    corrupt = new PuzzleArchive(file);
+    long indexStart = corrupt.indexStart;
+    long third = corrupt.index.get(2);
+    corrupt.close();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.allocate(8).putLong(0, third - 1), indexStart + 8 * 3);
+      channel.write(ByteBuffer.allocate(8).putLong(0, Long.MAX_VALUE / 2), indexStart + 8 * 4);
+    }
+    corrupt = new PuzzleArchive(file);
+    String[] expected = {"corrupt puzzle: a seeded puzzle is 18 bytes, not 3",
+        "corrupt puzzle: an explicit puzzle is cut short", "corrupt puzzle 2: bad offsets",
+        "corrupt puzzle 3: bad offsets"};
+    for (int id = 0; id < 4; id++) {
+      message = "";
+      try {
+        corrupt.get(id);
+      }
+      catch (IOException e) {
+        message = e.getMessage();
+      }
+      t.checkExpect(message.startsWith(expected[id]), true);
+    }
+    corrupt.close();
+    file.delete();
+  }
+
   /*
   //game test (without kruskal)
   void testBigBang(Tester t) {
@@ -0,0 +1,125 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+// builds spanning trees from edges packed into longs instead of Edge objects:
+// the weight sits above bit 33, the cell the edge starts from in bits 1 to
+// 32, and bit 0 says whether the edge runs to the cell's left or top neighbor
+class PackedEdges {
+  static final int WEIGHT_SHIFT = 33;
+  static final long TOP_EDGE = 1L;
+
+  // packs an edge from the given cell in the given direction (Board.LEFT or
+  // Board.TOP) with the given weight
+  static long pack(int cell, int dir, int weight) {
+    return ((long) weight << WEIGHT_SHIFT) | ((long) cell << 1)
+        | (dir == Board.TOP ? TOP_EDGE : 0L);
+  }
+
+  // returns the weight of the given edge
+  static int weight(long edge) {
+    return (int) (edge >>> WEIGHT_SHIFT);
+  }
+
+  // returns the cell the given edge starts from
+  static int from(long edge) {
+    return (int) ((edge >>> 1) & 0xFFFFFFFFL);
+  }
+
+  // returns the direction of the given edge, Board.LEFT or Board.TOP
+  static int dir(long edge) {
+    return (edge & TOP_EDGE) != 0 ? Board.TOP : Board.LEFT;
+  }
+
+  // returns the cell the given edge runs to on a board of the given height
+  static int to(long edge, int height) {
+    return (edge & TOP_EDGE) != 0 ? from(edge) - 1 : from(edge) - height;
+  }
+
+  // generates every edge of a width by height board, drawing the weights
+  // from the given Random cell by cell in column-major order, the left edge
+  // of a cell before its top edge
+  static long[] generate(int width, int height, Random r, int maxWeight) {
+    long[] edges = new long[Math.max(2 * width * height - width - height, 0)];
+    int count = 0;
+    for (int col = 0; col < width; col++) {
+      for (int row = 0; row < height; row++) {
+        int cell = col * height + row;
+        if (col > 0) {
+          edges[count++] = pack(cell, Board.LEFT, r.nextInt(maxWeight));
+        }
+        if (row > 0) {
+          edges[count++] = pack(cell, Board.TOP, r.nextInt(maxWeight));
+        }
+      }
+    }
+    return edges;
+  }
+
+  // sorts the given edges by weight with a stable counting sort
+  static long[] sortByWeight(long[] edges, int maxWeight) {
+    int[] start = new int[maxWeight + 1];
+    for (long edge : edges) {
+      start[weight(edge) + 1]++;
+    }
+    for (int w = 0; w < maxWeight; w++) {
+      start[w + 1] += start[w];
+    }
+    long[] sorted = new long[edges.length];
+    for (long edge : edges) {
+      sorted[start[weight(edge)]++] = edge;
+    }
+    return sorted;
+  }
+
+  // picks the spanning tree of the given sorted edges over a board of the
+  // given size, stopping as soon as the tree is complete
+  static long[] kruskal(long[] sorted, int width, int height) {
+    int cells = width * height;
+    long[] tree = new long[Math.max(cells - 1, 0)];
+    IntUnionFind uf = new IntUnionFind(cells);
+    int count = 0;
+    for (int i = 0; i < sorted.length && count < tree.length; i++) {
+      long edge = sorted[i];
+      if (uf.union(from(edge), to(edge, height))) {
+        tree[count++] = edge;
+      }
+    }
+    return tree;
+  }
+
+  // Effect: wires together both ends of every edge of the given tree
+  static void connect(long[] tree, Board board) {
+    int height = board.height();
+    for (long edge : tree) {
+      int from = from(edge);
+      int to = to(edge, height);
+      int dir = dir(edge);
+      board.setConnections(from, board.connections(from) | dir);
+      board.setConnections(to, board.connections(to) | Board.opposite(dir));
+    }
+  }
+
+  // Effect: wires the given board into a random spanning tree with Kruskal's
+  // algorithm, without building any Edge objects
+  static long[] kruskalBoard(Board board, Random r, int maxWeight) {
+    int width = board.width();
+    int height = board.height();
+    long[] tree = kruskal(sortByWeight(generate(width, height, r, maxWeight), maxWeight),
+        width, height);
+    connect(tree, board);
+    return tree;
+  }
+
+  // returns the given tree as Edges between the pieces of the given board
+  static ArrayList<Edge> toEdges(long[] tree, ArrayList<ArrayList<GamePiece>> board,
+      int height) {
+    ArrayList<Edge> edges = new ArrayList<Edge>();
+    for (long edge : tree) {
+      int from = from(edge);
+      int to = to(edge, height);
+      edges.add(new Edge(board.get(from / height).get(from % height),
+          board.get(to / height).get(to % height), weight(edge)));
+    }
+    return edges;
+  }
+}
@@ -0,0 +1,182 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// generates random spanning trees with Boruvka's algorithm, running each
+// round's scan over the cells on a ForkJoinPool. Every edge gets a distinct
+// weight hashed from a seed and its id, so the tree depends only on the seed
+// and not on how the work was split. Edge ids are 2 * cell for the edge to
+// the cell's left neighbor and 2 * cell + 1 for the one to its top neighbor
+class ParallelMst {
+  // ranges of cells smaller than this are scanned on one thread
+  static final int THRESHOLD = 1 << 14;
+
+  ForkJoinPool pool;
+
+  ParallelMst(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  // returns the weight of the given edge under the given seed, below 2^30
+  static int weight(long seed, int id) {
+    long z = seed + (id + 1) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return (int) ((z ^ (z >>> 31)) >>> 34);
+  }
+
+  // returns the spanning tree of a width by height board for the given
+  // seed, as edges packed like PackedEdges does
+  long[] generate(int width, int height, long seed) {
+    int cells = width * height;
+    long[] tree = new long[Math.max(cells - 1, 0)];
+    int[] comp = new int[cells];
+    int[] roots = new int[cells];
+    for (int i = 0; i < cells; i++) {
+      comp[i] = i;
+      roots[i] = i;
+    }
+    int rootCount = cells;
+    int count = 0;
+    IntUnionFind uf = new IntUnionFind(cells);
+    AtomicLongArray best = new AtomicLongArray(cells);
+
+    while (rootCount > 1) {
+      for (int i = 0; i < rootCount; i++) {
+        best.set(roots[i], Long.MAX_VALUE);
+      }
+      this.pool.invoke(new BoruvkaScan(width, height, seed, comp, best, 0, cells));
+
+      for (int i = 0; i < rootCount; i++) {
+        long key = best.get(roots[i]);
+        if (key != Long.MAX_VALUE) {
+          int id = (int) (key & 0xFFFFFFFFL);
+          int cell = id >>> 1;
+          int dir = (id & 1) == 1 ? Board.TOP : Board.LEFT;
+          int to = dir == Board.TOP ? cell - 1 : cell - height;
+          if (uf.union(cell, to)) {
+            tree[count++] = PackedEdges.pack(cell, dir, (int) (key >>> 32));
+          }
+        }
+      }
+
+      int next = 0;
+      for (int i = 0; i < rootCount; i++) {
+        if (uf.parent[roots[i]] == roots[i]) {
+          roots[next++] = roots[i];
+        }
+      }
+      if (next == rootCount) {
+        break;
+      }
+      rootCount = next;
+      this.pool.invoke(new BoruvkaRelabel(uf, comp, 0, cells));
+    }
+    return tree;
+  }
+
+  // Effect: wires the given board into a random spanning tree for the given
+  // seed and returns the tree
+  long[] generate(Board board, long seed) {
+    long[] tree = this.generate(board.width(), board.height(), seed);
+    PackedEdges.connect(tree, board);
+    return tree;
+  }
+}
+
+// finds, for every component, the lightest edge leaving it, looking at
+// the cells in [lo, hi)
+@SuppressWarnings("serial")
+class BoruvkaScan extends RecursiveAction {
+  int width;
+  int height;
+  long seed;
+  int[] comp;
+  AtomicLongArray best;
+  int lo;
+  int hi;
+
+  BoruvkaScan(int width, int height, long seed, int[] comp, AtomicLongArray best,
+      int lo, int hi) {
+    this.width = width;
+    this.height = height;
+    this.seed = seed;
+    this.comp = comp;
+    this.best = best;
+    this.lo = lo;
+    this.hi = hi;
+  }
+
+  protected void compute() {
+    if (this.hi - this.lo > ParallelMst.THRESHOLD) {
+      int mid = (this.lo + this.hi) >>> 1;
+      invokeAll(
+          new BoruvkaScan(this.width, this.height, this.seed, this.comp, this.best, this.lo, mid),
+          new BoruvkaScan(this.width, this.height, this.seed, this.comp, this.best, mid, this.hi));
+      return;
+    }
+    int height = this.height;
+    int cells = this.width * height;
+    for (int cell = this.lo; cell < this.hi; cell++) {
+      int row = cell % height;
+      long min = Long.MAX_VALUE;
+      if (cell >= height) {
+        min = this.consider(cell, cell - height, 2 * cell, min);
+      }
+      if (row > 0) {
+        min = this.consider(cell, cell - 1, 2 * cell + 1, min);
+      }
+      if (cell + height < cells) {
+        min = this.consider(cell, cell + height, 2 * (cell + height), min);
+      }
+      if (row < height - 1) {
+        min = this.consider(cell, cell + 1, 2 * (cell + 1) + 1, min);
+      }
+      if (min != Long.MAX_VALUE) {
+        int root = this.comp[cell];
+        long cur = this.best.get(root);
+        while (min < cur && !this.best.compareAndSet(root, cur, min)) {
+          cur = this.best.get(root);
+        }
+      }
+    }
+  }
+
+  // returns the lighter of the given key and the edge with the given id from
+  // cell to next, if that edge leaves the cell's component
+  long consider(int cell, int next, int id, long min) {
+    if (this.comp[cell] == this.comp[next]) {
+      return min;
+    }
+    long key = ((long) ParallelMst.weight(this.seed, id) << 32) | (id & 0xFFFFFFFFL);
+    return Math.min(key, min);
+  }
+}
+
+// points every cell in [lo, hi) at the root of its component
+@SuppressWarnings("serial")
+class BoruvkaRelabel extends RecursiveAction {
+  IntUnionFind uf;
+  int[] comp;
+  int lo;
+  int hi;
+
+  BoruvkaRelabel(IntUnionFind uf, int[] comp, int lo, int hi) {
+    this.uf = uf;
+    this.comp = comp;
+    this.lo = lo;
+    this.hi = hi;
+  }
+
+  protected void compute() {
+    if (this.hi - this.lo > ParallelMst.THRESHOLD) {
+      int mid = (this.lo + this.hi) >>> 1;
+      invokeAll(new BoruvkaRelabel(this.uf, this.comp, this.lo, mid),
+          new BoruvkaRelabel(this.uf, this.comp, mid, this.hi));
+      return;
+    }
+    for (int cell = this.lo; cell < this.hi; cell++) {
+      this.comp[cell] = this.uf.root(this.comp[cell]);
+    }
+  }
+}
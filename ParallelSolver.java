@@ -0,0 +1,301 @@
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// solves boards like PuzzleSolver, spreading the guessing over a
+// ForkJoinPool. After PuzzleSolver's inference at the root, the undecided
+// cells fall into regions that no two undecided neighbors join; each region
+// is solved on its own, concurrently, and the pieces are checked together.
+// Only if they do not fit, which the global rules can cause, does the search
+// fall back to guessing over the whole board, split at its first few guesses
+// into tasks that idle workers steal. Turns that a task proves wrong from
+// the root are shared with every other task through refuted
+class ParallelSolver {
+  // guesses at depths below this are split into tasks
+  static final int SPLIT_DEPTH = 4;
+  // regions are handed out in batches of at least this many cells
+  static final int BATCH = 1 << 12;
+
+  ForkJoinPool pool;
+  Board board;
+  boolean tree;
+  PuzzleSolver root;
+  // the domains after the root's inference
+  byte[] rootDomains;
+  AtomicIntegerArray refuted;
+  // set once a solution is found or a region has none
+  AtomicBoolean stop;
+  // a PuzzleSolver for each worker thread, made on first use
+  ThreadLocal<PuzzleSolver> workers;
+  // the number of regions solved separately, and whether the full search
+  // was needed, in the last solve
+  int regions;
+  boolean fellBack;
+
+  ParallelSolver(ForkJoinPool pool, Board board, boolean tree) {
+    this.pool = pool;
+    this.board = board;
+    this.tree = tree;
+    this.root = new PuzzleSolver(board, tree);
+  }
+
+  ParallelSolver(ForkJoinPool pool, Board board) {
+    this(pool, board, true);
+  }
+
+  // returns whether the board can be solved, keeping a solution
+  boolean solve() {
+    if (!this.prepare()) {
+      return false;
+    }
+    // solve the regions concurrently and put their turns together
+    ArrayList<ArrayList<int[]>> batches = this.regions();
+    ArrayList<RegionTask> tasks = new ArrayList<RegionTask>();
+    byte[] merged = this.rootDomains.clone();
+    for (ArrayList<int[]> batch : batches) {
+      tasks.add(new RegionTask(this, batch, merged));
+      this.pool.execute(tasks.get(tasks.size() - 1));
+    }
+    boolean solvable = true;
+    for (RegionTask task : tasks) {
+      solvable = task.join() && solvable;
+    }
+    if (!solvable) {
+      return false;
+    }
+    this.root.load(merged, this.root.uf);
+    if (this.root.complete()) {
+      this.root.saveSolution();
+      return true;
+    }
+    // the regions' solutions clash, so search the whole board
+    return this.searchAll();
+  }
+
+  // Effect: starts a solve, running the root's inference; returns false if
+  // that already shows there is no solution
+  boolean prepare() {
+    this.refuted = new AtomicIntegerArray(this.root.cells);
+    this.stop = new AtomicBoolean();
+    this.fellBack = false;
+    this.workers = new ThreadLocal<PuzzleSolver>() {
+      protected PuzzleSolver initialValue() {
+        ParallelSolver owner = ParallelSolver.this;
+        PuzzleSolver worker = new PuzzleSolver(owner.board, owner.tree);
+        worker.init();
+        worker.refuted = owner.refuted;
+        worker.cancel = owner.stop;
+        return worker;
+      }
+    };
+    this.root.init();
+    if (!this.root.fixpoint() || !this.root.probe()) {
+      return false;
+    }
+    this.rootDomains = this.root.domain.clone();
+    return true;
+  }
+
+  // Effect: searches the whole board from the root's domains, split into
+  // tasks; returns whether there is a solution, keeping it
+  boolean searchAll() {
+    this.fellBack = true;
+    byte[] turns = this.pool.invoke(new SplitTask(this, this.rootDomains, 0));
+    this.root.solution = turns;
+    return turns != null;
+  }
+
+  // returns the regions of undecided cells, grouped into batches; each
+  // region starts with its smallest cell
+  ArrayList<ArrayList<int[]>> regions() {
+    PuzzleSolver root = this.root;
+    boolean[] taken = new boolean[root.cells];
+    int[] queue = new int[root.cells];
+    ArrayList<ArrayList<int[]>> batches = new ArrayList<ArrayList<int[]>>();
+    ArrayList<int[]> batch = new ArrayList<int[]>();
+    int batchCells = 0;
+    this.regions = 0;
+    for (int start = 0; start < root.cells; start++) {
+      if (!taken[start] && !root.decided(start)) {
+        int head = 0;
+        int tail = 0;
+        taken[start] = true;
+        queue[tail++] = start;
+        while (head < tail) {
+          int cell = queue[head++];
+          for (int dir = Board.TOP; dir <= Board.LEFT; dir <<= 1) {
+            int next = this.board.neighbor(cell, dir);
+            if (next != -1 && !taken[next] && !root.decided(next)) {
+              taken[next] = true;
+              queue[tail++] = next;
+            }
+          }
+        }
+        int[] region = new int[tail];
+        System.arraycopy(queue, 0, region, 0, tail);
+        batch.add(region);
+        this.regions++;
+        batchCells += tail;
+        if (batchCells >= BATCH) {
+          batches.add(batch);
+          batch = new ArrayList<int[]>();
+          batchCells = 0;
+        }
+      }
+    }
+    if (!batch.isEmpty()) {
+      batches.add(batch);
+    }
+    return batches;
+  }
+
+  // returns the calling thread's solver with the given domains loaded
+  PuzzleSolver worker(byte[] domains) {
+    PuzzleSolver worker = this.workers.get();
+    worker.load(domains, this.root.uf);
+    return worker;
+  }
+
+  // returns the number of clockwise turns the given cell needs in the
+  // solution found
+  int turns(int cell) {
+    return this.root.turns(cell);
+  }
+
+  // Effect: turns every piece of the given board into the solution found
+  void apply(Board board) {
+    this.root.apply(board);
+  }
+}
+
+// solves a batch of regions one after another from the root's domains,
+// writing each region's turns into merged; returns false if some region
+// cannot be solved, which means the board cannot be either
+@SuppressWarnings("serial")
+class RegionTask extends RecursiveTask<Boolean> {
+  ParallelSolver solver;
+  ArrayList<int[]> regions;
+  byte[] merged;
+
+  RegionTask(ParallelSolver solver, ArrayList<int[]> regions, byte[] merged) {
+    this.solver = solver;
+    this.regions = regions;
+    this.merged = merged;
+  }
+
+  protected Boolean compute() {
+    PuzzleSolver worker = this.solver.worker(this.solver.rootDomains);
+    worker.fromRoot = true;
+    worker.region = new boolean[worker.cells];
+    boolean solvable = true;
+    for (int[] region : this.regions) {
+      if (this.solver.stop.get()) {
+        solvable = false;
+        break;
+      }
+      int last = 0;
+      for (int cell : region) {
+        worker.region[cell] = true;
+        last = Math.max(last, cell);
+      }
+      worker.first = region[0];
+      worker.last = last + 1;
+      worker.solutions = 0;
+      boolean solved = worker.explore(1, true) > 0;
+      for (int cell : region) {
+        worker.region[cell] = false;
+        this.merged[cell] = worker.domain[cell];
+      }
+      worker.undo(0);
+      if (!solved) {
+        this.solver.stop.set(true);
+        solvable = false;
+      }
+    }
+    worker.region = null;
+    return solvable;
+  }
+}
+
+// searches from the given domains, splitting each guess above
+// ParallelSolver.SPLIT_DEPTH into a task per turn; returns the turns of a
+// solution, or null if there is none or another task found one first
+@SuppressWarnings("serial")
+class SplitTask extends RecursiveTask<byte[]> {
+  ParallelSolver solver;
+  byte[] domains;
+  int depth;
+
+  SplitTask(ParallelSolver solver, byte[] domains, int depth) {
+    this.solver = solver;
+    this.domains = domains;
+    this.depth = depth;
+  }
+
+  protected byte[] compute() {
+    ParallelSolver solver = this.solver;
+    if (solver.stop.get()) {
+      return null;
+    }
+    PuzzleSolver worker = solver.worker(this.domains);
+    worker.fromRoot = this.depth == 0;
+    worker.first = 0;
+    worker.last = worker.cells;
+    worker.solutions = 0;
+    if (!worker.dropRefuted()) {
+      return null;
+    }
+    if (this.depth >= ParallelSolver.SPLIT_DEPTH) {
+      return this.found(worker, worker.explore(1, true) > 0);
+    }
+    int cell = worker.pick(0);
+    if (cell == -1) {
+      return this.found(worker, worker.complete());
+    }
+
+    // every task needs the domains it starts from, so they are copied here
+    // and the worker is free for other tasks while this one waits
+    int options = worker.domain[cell];
+    ArrayList<SplitTask> children = new ArrayList<SplitTask>();
+    ArrayList<Integer> turns = new ArrayList<Integer>();
+    for (int k = 0; k < 4; k++) {
+      int bit = 1 << k;
+      if ((options & bit) != 0) {
+        int mark = worker.trailSize;
+        worker.restrict(cell, bit);
+        if (worker.propagate() && worker.check(mark)) {
+          children.add(new SplitTask(solver, worker.domain.clone(), this.depth + 1));
+          turns.add(bit);
+        }
+        else if (this.depth == 0) {
+          PuzzleSolver.refute(solver.refuted, cell, bit);
+        }
+        worker.undo(mark);
+      }
+    }
+    invokeAll(children);
+    for (int i = 0; i < children.size(); i++) {
+      byte[] result = children.get(i).join();
+      if (result != null) {
+        return result;
+      }
+      if (this.depth == 0 && !solver.stop.get()) {
+        PuzzleSolver.refute(solver.refuted, cell, turns.get(i));
+      }
+    }
+    return null;
+  }
+
+  // returns a copy of the worker's solution if it found one, and stops the
+  // other tasks
+  byte[] found(PuzzleSolver worker, boolean solved) {
+    if (!solved) {
+      return null;
+    }
+    this.solver.stop.set(true);
+    worker.saveSolution();
+    return worker.solution.clone();
+  }
+}
@@ -0,0 +1,198 @@
+// keeps the powered cells of a Board up to date as single cells rotate,
+// remembering for every powered cell the neighbor it got its power from so
+// that a rotation only un-powers the part of the tree that hung off it
+class PowerPropagator {
+  Board board;
+  int station;
+  // the cell each powered cell got its power from, the station for itself,
+  // or -1 for cells without power
+  int[] parent;
+  int[] queue;
+  int[] orphans;
+  boolean[] orphaned;
+  // the cells whose powered state flipped during the last update
+  int[] changed;
+  int changedCount;
+  // the number of powered cells, kept as cells gain and lose power so that
+  // a win is seen without looking at every cell
+  int poweredCount;
+
+  PowerPropagator(Board board, int station) {
+    int cells = board.cells();
+    this.board = board;
+    this.parent = new int[cells];
+    this.queue = new int[cells];
+    this.orphans = new int[cells];
+    this.orphaned = new boolean[cells];
+    this.changed = new int[cells];
+    this.reset(station);
+  }
+
+  // Effect: powers the board from scratch, from the given station
+  void reset(int station) {
+    int cells = this.board.cells();
+    this.station = station;
+    this.changedCount = 0;
+    this.poweredCount = 0;
+    for (int i = 0; i < cells; i++) {
+      this.parent[i] = -1;
+      this.orphaned[i] = this.board.isPowered(i);
+      this.board.setPowered(i, false);
+    }
+    this.power(station, station);
+    this.queue[0] = station;
+    this.flood(0, 1);
+    for (int i = 0; i < cells; i++) {
+      if (this.orphaned[i] && !this.board.isPowered(i)) {
+        this.changed[this.changedCount++] = i;
+      }
+      this.orphaned[i] = false;
+    }
+  }
+
+  // Effect: rotates the given cell clockwise and updates the powered cells
+  void rotate(int cell) {
+    int before = this.board.connections(cell);
+    this.board.rotateClockwise(cell);
+    int removed = before & ~this.board.connections(cell);
+    this.changedCount = 0;
+    int orphanCount = 0;
+
+    // un-power the subtrees that hung off the edges this rotation cut
+    for (int dir : Board.DIRECTIONS) {
+      if ((removed & dir) != 0) {
+        int next = this.board.neighbor(cell, dir);
+        if (next != -1 && this.parent[next] == cell) {
+          orphanCount = this.cut(next, orphanCount);
+        }
+        else if (next != -1 && this.parent[cell] == next) {
+          orphanCount = this.cut(cell, orphanCount);
+        }
+      }
+    }
+
+    // re-flood from the rotated cell and every cell that lost its power
+    int tail = 0;
+    if (this.board.isPowered(cell)) {
+      this.queue[tail++] = cell;
+    }
+    else {
+      tail = this.reconnect(cell, tail);
+    }
+    for (int i = 0; i < orphanCount; i++) {
+      tail = this.reconnect(this.orphans[i], tail);
+    }
+    this.flood(0, tail);
+
+    for (int i = 0; i < orphanCount; i++) {
+      int orphan = this.orphans[i];
+      if (!this.board.isPowered(orphan)) {
+        this.changed[this.changedCount++] = orphan;
+      }
+      this.orphaned[orphan] = false;
+    }
+  }
+
+  // Effect: moves the station to the given neighbor of the current one,
+  // turning the powered tree around so that it is rooted at the new station
+  void moveStation(int to) {
+    int from = this.station;
+    this.board.setPowerStation(from, false);
+    this.board.setPowerStation(to, true);
+    this.board.setPowered(from, true);
+    if (this.parent[to] == -1) {
+      this.reset(to);
+      return;
+    }
+    this.board.setPowered(to, true);
+    this.changedCount = 0;
+    int child = to;
+    int cur = this.parent[to];
+    this.parent[to] = to;
+    while (child != from) {
+      int next = this.parent[cur];
+      this.parent[cur] = child;
+      child = cur;
+      cur = next;
+    }
+    this.station = to;
+  }
+
+  // Effect: un-powers the given cell and every cell that got its power
+  // through it, adding them to the orphans; returns the new orphan count
+  int cut(int root, int orphanCount) {
+    int head = orphanCount;
+    this.orphans[orphanCount++] = root;
+    this.orphaned[root] = true;
+    while (head < orphanCount) {
+      int from = this.orphans[head++];
+      for (int dir : Board.DIRECTIONS) {
+        int next = this.board.neighbor(from, dir);
+        if (next != -1 && this.parent[next] == from && next != from) {
+          this.orphans[orphanCount++] = next;
+          this.orphaned[next] = true;
+        }
+      }
+      this.parent[from] = -1;
+      this.board.setPowered(from, false);
+      this.poweredCount--;
+    }
+    return orphanCount;
+  }
+
+  // Effect: powers the given unpowered cell from any powered neighbor it is
+  // wired to and queues it; returns the new queue length
+  int reconnect(int cell, int tail) {
+    if (this.board.isPowered(cell)) {
+      return tail;
+    }
+    int mask = this.board.connections(cell);
+    for (int dir : Board.DIRECTIONS) {
+      int next = this.linked(cell, mask, dir);
+      if (next != -1 && this.board.isPowered(next)) {
+        this.power(cell, next);
+        this.queue[tail++] = cell;
+        return tail;
+      }
+    }
+    return tail;
+  }
+
+  // Effect: powers every unpowered cell reachable from the queued cells
+  void flood(int head, int tail) {
+    while (head < tail) {
+      int from = this.queue[head++];
+      int mask = this.board.connections(from);
+      for (int dir : Board.DIRECTIONS) {
+        int next = this.linked(from, mask, dir);
+        if (next != -1 && !this.board.isPowered(next)) {
+          this.power(next, from);
+          this.queue[tail++] = next;
+        }
+      }
+    }
+  }
+
+  // Effect: powers the given cell from the given neighbor
+  void power(int cell, int from) {
+    this.board.setPowered(cell, true);
+    this.parent[cell] = from;
+    this.poweredCount++;
+    if (!this.orphaned[cell]) {
+      this.changed[this.changedCount++] = cell;
+    }
+  }
+
+  // returns the neighbor of the given cell with the given mask in the given
+  // direction if both are wired towards each other, or -1 otherwise
+  int linked(int cell, int mask, int dir) {
+    if ((mask & dir) == 0) {
+      return -1;
+    }
+    int next = this.board.neighbor(cell, dir);
+    if (next == -1 || (this.board.connections(next) & Board.opposite(dir)) == 0) {
+      return -1;
+    }
+    return next;
+  }
+}
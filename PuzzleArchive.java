@@ -0,0 +1,322 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// a library of puzzles in one file that fetches any puzzle by its id with a
+// single read. The file is a 24-byte header of the magic number, the
+// version, the number of puzzles and where the index starts, then the
+// puzzles, then the index: the offset of every puzzle and of the index
+// itself, so that each puzzle's length is the gap to the next offset.
+// A puzzle is either SEEDED, the generator and seed that made it, or
+// EXPLICIT, its spanning tree as two bits a cell, whether the cell has an
+// edge to its left and to its top neighbor, then the turns that scramble
+// every cell as two more bits, both layers deflated together
+class PuzzleArchive {
+  // "LEAR", the archive's magic number
+  static final int MAGIC = 0x4C454152;
+  static final int VERSION = 1;
+  static final int HEADER = 24;
+  // the most cells a puzzle may have, 4096 by 4096, so that a corrupt size
+  // is turned away before anything that big is allocated
+  static final int MAX_CELLS = 1 << 24;
+  // the kinds of puzzle
+  static final byte SEEDED = 0;
+  static final byte EXPLICIT = 1;
+  // the generators a SEEDED puzzle may name, by their index here
+  static final PuzzleGenerator[] GENERATORS = {new KruskalGenerator(), new PrimGenerator(),
+      new WilsonGenerator(), new BacktrackerGenerator()};
+
+  FileChannel channel;
+  int count;
+  long indexStart;
+  LongBuffer index;
+
+  PuzzleArchive(File file) throws IOException {
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    ByteBuffer header = ByteBuffer.allocate(HEADER);
+    this.readFully(header, 0);
+    header.flip();
+    if (header.getInt() != MAGIC) {
+      this.channel.close();
+      throw new IOException("not a puzzle archive: " + file);
+    }
+    int version = header.getInt();
+    if (version != VERSION) {
+      this.channel.close();
+      throw new IOException("unsupported archive version " + version + ": " + file);
+    }
+    this.count = header.getInt();
+    header.getInt();
+    long indexStart = header.getLong();
+    if (this.count < 0 || indexStart + 8L * (this.count + 1) != this.channel.size()) {
+      this.channel.close();
+      throw new IOException("corrupt puzzle archive: " + file);
+    }
+    this.indexStart = indexStart;
+    this.index = this.channel.map(FileChannel.MapMode.READ_ONLY, indexStart,
+        8L * (this.count + 1)).asLongBuffer();
+  }
+
+  // returns the number of puzzles in this archive
+  int size() {
+    return this.count;
+  }
+
+  // returns the puzzle with the given id, scrambled, with its solution and
+  // the power station in the top left corner like LightEmAll's boards
+  SavedGame get(int id) throws IOException {
+    if (id < 0 || id >= this.count) {
+      throw new IndexOutOfBoundsException("no puzzle " + id + " in " + this.count);
+    }
+    long start = this.index.get(id);
+    long end = this.index.get(id + 1);
+    if (start < HEADER || end <= start || end > this.indexStart) {
+      throw new IOException("corrupt puzzle " + id + ": bad offsets " + start + " to " + end);
+    }
+    ByteBuffer record = ByteBuffer.allocate((int) (end - start));
+    this.readFully(record, start);
+    record.flip();
+    byte kind = record.get();
+    SavedGame game;
+    if (kind == SEEDED) {
+      game = seeded(record);
+    }
+    else if (kind == EXPLICIT) {
+      game = explicit(record);
+    }
+    else {
+      throw new IOException("unknown puzzle kind " + kind + " for puzzle " + id);
+    }
+    game.board.setPowerStation(0, true);
+    return game;
+  }
+
+  // returns the puzzle made by the generator and seed in the given record
+  static SavedGame seeded(ByteBuffer record) throws IOException {
+    if (record.remaining() != 17) {
+      throw new IOException("corrupt puzzle: a seeded puzzle is 18 bytes, not "
+          + (record.remaining() + 1));
+    }
+    int generator = record.get();
+    int width = record.getInt();
+    int height = record.getInt();
+    long seed = record.getLong();
+    if (generator < 0 || generator >= GENERATORS.length) {
+      throw new IOException("unknown generator " + generator);
+    }
+    checkSize(width, height);
+    PackedBoard board = new PackedBoard(width, height);
+    Random r = new Random(seed);
+    GENERATORS[generator].generate(board, r);
+    SavedGame game = new SavedGame(board, 0, 0);
+    game.solution = board.cells.clone();
+    board.randomize(r);
+    return game;
+  }
+
+  // returns the puzzle whose tree and turns are in the given record
+  static SavedGame explicit(ByteBuffer record) throws IOException {
+    if (record.remaining() < 8) {
+      throw new IOException("corrupt puzzle: an explicit puzzle is cut short");
+    }
+    int width = record.getInt();
+    int height = record.getInt();
+    checkSize(width, height);
+    int cells = width * height;
+    byte[] layers = new byte[2 * ((cells + 3) / 4)];
+    Inflater inflater = new Inflater();
+    inflater.setInput(record);
+    try {
+      if (inflater.inflate(layers) != layers.length) {
+        throw new IOException("truncated puzzle");
+      }
+    }
+    catch (DataFormatException e) {
+      throw new IOException("corrupt puzzle", e);
+    }
+    finally {
+      inflater.end();
+    }
+    int turnsStart = layers.length / 2;
+    PackedBoard board = new PackedBoard(width, height);
+    byte[] solution = new byte[cells];
+    for (int cell = 0; cell < cells; cell++) {
+      int edges = crumb(layers, 0, cell);
+      if (((edges & 1) != 0 && cell < height) || ((edges & 2) != 0 && cell % height == 0)) {
+        throw new IOException("corrupt puzzle: an edge leaves the board");
+      }
+      if ((edges & 1) != 0) {
+        solution[cell] |= Board.LEFT;
+        solution[cell - height] |= Board.RIGHT;
+      }
+      if ((edges & 2) != 0) {
+        solution[cell] |= Board.TOP;
+        solution[cell - 1] |= Board.BOTTOM;
+      }
+    }
+    for (int cell = 0; cell < cells; cell++) {
+      int turns = crumb(layers, turnsStart, cell);
+      board.cells[cell] = (byte) PuzzleSolver.ROTATED[solution[cell]][turns];
+    }
+    SavedGame game = new SavedGame(board, 0, 0);
+    game.solution = solution;
+    return game;
+  }
+
+  // throws if a board of the given size is empty or has more than MAX_CELLS
+  // cells
+  static void checkSize(int width, int height) throws IOException {
+    if (width <= 0 || height <= 0 || (long) width * height > MAX_CELLS) {
+      throw new IOException("corrupt puzzle: bad size " + width + "x" + height);
+    }
+  }
+
+  // returns the two bits of the given cell in the layer at the given start
+  static int crumb(byte[] layers, int start, int cell) {
+    return (layers[start + cell / 4] >> (2 * (cell % 4))) & 3;
+  }
+
+  // Effect: fills the given buffer from the given position of the file
+  void readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int n = this.channel.read(buffer, position);
+      if (n < 0) {
+        throw new IOException("unexpected end of puzzle archive");
+      }
+      position += n;
+    }
+  }
+
+  // Effect: closes the file
+  void close() throws IOException {
+    this.channel.close();
+  }
+}
+
+// writes a PuzzleArchive, one puzzle after another, and the index on close
+class ArchiveWriter {
+  FileChannel channel;
+  long position;
+  long[] offsets;
+  int count;
+  Deflater deflater;
+  // the layers and deflated bytes of the last explicit puzzle, kept for the
+  // next one
+  byte[] layers;
+  byte[] packed;
+
+  ArchiveWriter(File file) throws IOException {
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    this.position = PuzzleArchive.HEADER;
+    this.offsets = new long[16];
+    this.deflater = new Deflater(Deflater.BEST_COMPRESSION);
+    this.layers = new byte[0];
+    this.packed = new byte[0];
+  }
+
+  // Effect: adds the puzzle the given generator, by its index in
+  // PuzzleArchive.GENERATORS, makes on a board of the given size from the
+  // given seed, scrambled by the same Random; returns the puzzle's id
+  int addSeeded(int generator, int width, int height, long seed) throws IOException {
+    ByteBuffer record = ByteBuffer.allocate(18);
+    record.put(PuzzleArchive.SEEDED);
+    record.put((byte) generator);
+    record.putInt(width);
+    record.putInt(height);
+    record.putLong(seed);
+    record.flip();
+    return this.append(record);
+  }
+
+  // Effect: adds the puzzle of the given spanning tree, packed like
+  // PackedEdges, scrambled as the given board is; returns the puzzle's id
+  int add(long[] tree, Board scrambled) throws IOException {
+    int width = scrambled.width();
+    int height = scrambled.height();
+    int cells = width * height;
+    int layer = (cells + 3) / 4;
+    if (this.layers.length < 2 * layer) {
+      this.layers = new byte[2 * layer];
+    }
+    Arrays.fill(this.layers, 0, 2 * layer, (byte) 0);
+    for (long edge : tree) {
+      int bit = PackedEdges.dir(edge) == Board.LEFT ? 1 : 2;
+      int cell = PackedEdges.from(edge);
+      this.layers[cell / 4] |= bit << (2 * (cell % 4));
+    }
+    byte[] solution = HintEngine.targets(width, height, tree);
+    for (int cell = 0; cell < cells; cell++) {
+      int turns = HintEngine.NEED[solution[cell]][scrambled.connections(cell)];
+      if (turns < 0) {
+        throw new IllegalArgumentException("cell " + cell + " is not a turn of the tree");
+      }
+      this.layers[layer + cell / 4] |= turns << (2 * (cell % 4));
+    }
+
+    this.deflater.reset();
+    this.deflater.setInput(this.layers, 0, 2 * layer);
+    this.deflater.finish();
+    int size = 0;
+    while (!this.deflater.finished()) {
+      if (size == this.packed.length) {
+        this.packed = Arrays.copyOf(this.packed, Math.max(64, 2 * size));
+      }
+      size += this.deflater.deflate(this.packed, size, this.packed.length - size);
+    }
+    ByteBuffer record = ByteBuffer.allocate(9 + size);
+    record.put(PuzzleArchive.EXPLICIT);
+    record.putInt(width);
+    record.putInt(height);
+    record.put(this.packed, 0, size);
+    record.flip();
+    return this.append(record);
+  }
+
+  // Effect: writes the given record at the end of the file; returns its id
+  int append(ByteBuffer record) throws IOException {
+    if (this.count + 1 >= this.offsets.length) {
+      this.offsets = Arrays.copyOf(this.offsets, 2 * this.offsets.length);
+    }
+    this.offsets[this.count] = this.position;
+    this.position += this.write(record, this.position);
+    return this.count++;
+  }
+
+  // Effect: writes the given buffer at the given position of the file;
+  // returns the bytes written
+  long write(ByteBuffer buffer, long position) throws IOException {
+    long start = position;
+    while (buffer.hasRemaining()) {
+      position += this.channel.write(buffer, position);
+    }
+    return position - start;
+  }
+
+  // Effect: writes the index and the header and closes the file
+  void close() throws IOException {
+    long indexStart = this.position;
+    this.offsets[this.count] = indexStart;
+    ByteBuffer index = ByteBuffer.allocate(8 * (this.count + 1));
+    index.asLongBuffer().put(this.offsets, 0, this.count + 1);
+    this.write(index, indexStart);
+    ByteBuffer header = ByteBuffer.allocate(PuzzleArchive.HEADER);
+    header.putInt(PuzzleArchive.MAGIC);
+    header.putInt(PuzzleArchive.VERSION);
+    header.putInt(this.count);
+    header.putInt(0);
+    header.putLong(indexStart);
+    header.flip();
+    this.write(header, 0);
+    this.deflater.end();
+    this.channel.close();
+  }
+}
@@ -0,0 +1,183 @@
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// generates the wiring of a puzzle
+interface PuzzleGenerator {
+  // Effect: wires the given board, which has no connections yet, into a
+  // random spanning tree; returns the tree's edges packed like PackedEdges
+  long[] generate(Board board, Random r);
+}
+
+// Kruskal's algorithm over randomly weighted edges, drawing from the Random
+// exactly like LightEmAll.kruskalMST so that seeded boards stay the same
+class KruskalGenerator implements PuzzleGenerator {
+  public long[] generate(Board board, Random r) {
+    return PackedEdges.kruskalBoard(board, r, LightEmAll.MAX_WEIGHT);
+  }
+}
+
+// Boruvka's algorithm on a ForkJoinPool, see ParallelMst
+class BoruvkaGenerator implements PuzzleGenerator {
+  ParallelMst mst;
+
+  BoruvkaGenerator(ForkJoinPool pool) {
+    this.mst = new ParallelMst(pool);
+  }
+
+  public long[] generate(Board board, Random r) {
+    return this.mst.generate(board, r.nextLong());
+  }
+}
+
+// Wilson's algorithm: loop-erased random walks that give every spanning tree
+// the same chance, with no edge list and no sort. Each walk only remembers
+// the direction it last left every cell in, one byte per cell
+class WilsonGenerator implements PuzzleGenerator {
+  public long[] generate(Board board, Random r) {
+    int cells = board.cells();
+    boolean[] inTree = new boolean[cells];
+    byte[] exit = new byte[cells];
+    TreeBuilder tree = new TreeBuilder(board);
+    inTree[r.nextInt(cells)] = true;
+
+    for (int start = 0; start < cells; start++) {
+      // walk until the tree is hit, overwriting exits so loops erase themselves
+      int cell = start;
+      while (!inTree[cell]) {
+        int dir = tree.randomDirection(cell, r);
+        exit[cell] = (byte) dir;
+        cell = board.neighbor(cell, dir);
+      }
+      // then add the loop-erased path to the tree
+      cell = start;
+      while (!inTree[cell]) {
+        inTree[cell] = true;
+        tree.link(cell, exit[cell]);
+        cell = board.neighbor(cell, exit[cell]);
+      }
+    }
+    return tree.edges();
+  }
+}
+
+// randomized Prim: grows a single tree from a random cell, each step taking a
+// random edge off the frontier. Frontier edges are ints of cell * 4 plus the
+// direction's index, and are dropped lazily once both ends are in the tree
+class PrimGenerator implements PuzzleGenerator {
+  public long[] generate(Board board, Random r) {
+    int cells = board.cells();
+    boolean[] inTree = new boolean[cells];
+    int[] frontier = new int[4 * cells];
+    int size = 0;
+    TreeBuilder tree = new TreeBuilder(board);
+
+    int first = r.nextInt(cells);
+    inTree[first] = true;
+    size = this.addFrontier(board, first, inTree, frontier, size);
+    while (size > 0) {
+      int pick = r.nextInt(size);
+      int edge = frontier[pick];
+      frontier[pick] = frontier[--size];
+      int cell = edge >>> 2;
+      int dir = 1 << (edge & 3);
+      int next = board.neighbor(cell, dir);
+      if (!inTree[next]) {
+        inTree[next] = true;
+        tree.link(cell, dir);
+        size = this.addFrontier(board, next, inTree, frontier, size);
+      }
+    }
+    return tree.edges();
+  }
+
+  // Effect: adds the edges from the given cell to cells outside the tree to
+  // the frontier; returns the new frontier size
+  int addFrontier(Board board, int cell, boolean[] inTree, int[] frontier, int size) {
+    for (int i = 0; i < 4; i++) {
+      int next = board.neighbor(cell, 1 << i);
+      if (next != -1 && !inTree[next]) {
+        frontier[size++] = cell * 4 + i;
+      }
+    }
+    return size;
+  }
+}
+
+// the recursive backtracker, a depth-first walk run on an explicit stack,
+// which makes long winding corridors
+class BacktrackerGenerator implements PuzzleGenerator {
+  public long[] generate(Board board, Random r) {
+    int cells = board.cells();
+    boolean[] visited = new boolean[cells];
+    int[] stack = new int[cells];
+    int[] open = new int[4];
+    int top = 0;
+    TreeBuilder tree = new TreeBuilder(board);
+
+    int first = r.nextInt(cells);
+    visited[first] = true;
+    stack[top++] = first;
+    while (top > 0) {
+      int cell = stack[top - 1];
+      int count = 0;
+      for (int dir = Board.TOP; dir <= Board.LEFT; dir <<= 1) {
+        int next = board.neighbor(cell, dir);
+        if (next != -1 && !visited[next]) {
+          open[count++] = dir;
+        }
+      }
+      if (count == 0) {
+        top--;
+      }
+      else {
+        int dir = open[r.nextInt(count)];
+        int next = board.neighbor(cell, dir);
+        visited[next] = true;
+        tree.link(cell, dir);
+        stack[top++] = next;
+      }
+    }
+    return tree.edges();
+  }
+}
+
+// wires tree edges into a board while keeping them as packed edges
+class TreeBuilder {
+  Board board;
+  long[] edges;
+  int count;
+
+  TreeBuilder(Board board) {
+    this.board = board;
+    this.edges = new long[Math.max(board.cells() - 1, 0)];
+  }
+
+  // Effect: wires the given cell to its neighbor in the given direction and
+  // records the edge
+  void link(int cell, int dir) {
+    int next = this.board.neighbor(cell, dir);
+    this.board.setConnections(cell, this.board.connections(cell) | dir);
+    this.board.setConnections(next, this.board.connections(next) | Board.opposite(dir));
+    if (dir == Board.LEFT || dir == Board.TOP) {
+      this.edges[this.count++] = PackedEdges.pack(cell, dir, 0);
+    }
+    else {
+      this.edges[this.count++] = PackedEdges.pack(next, Board.opposite(dir), 0);
+    }
+  }
+
+  // returns a random direction from the given cell that stays on the board
+  int randomDirection(int cell, Random r) {
+    while (true) {
+      int dir = 1 << r.nextInt(4);
+      if (this.board.neighbor(cell, dir) != -1) {
+        return dir;
+      }
+    }
+  }
+
+  // returns the edges linked so far
+  long[] edges() {
+    return this.edges;
+  }
+}
@@ -0,0 +1,159 @@
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// keeps a bounded queue of ready-made Kruskal games for every board size
+// asked for, refilled by background workers, so that starting a new game is
+// usually just taking one off the queue
+class PuzzlePool {
+  int capacity;
+  ExecutorService workers;
+  HashMap<Long, Shelf> shelves;
+  AtomicLong seeds;
+
+  // hit and miss counts, and the total time spent refilling
+  AtomicLong hits = new AtomicLong();
+  AtomicLong misses = new AtomicLong();
+  AtomicLong refills = new AtomicLong();
+  AtomicLong refillNanos = new AtomicLong();
+
+  PuzzlePool(int capacity, int threads) {
+    this(capacity, threads, new Random().nextLong());
+  }
+
+  // a pool whose games come from Randoms seeded one after another from the
+  // given seed
+  PuzzlePool(int capacity, int threads, long seed) {
+    this.capacity = capacity;
+    this.shelves = new HashMap<Long, Shelf>();
+    this.seeds = new AtomicLong(seed);
+    this.workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      public Thread newThread(Runnable task) {
+        Thread thread = new Thread(task, "puzzle-pool");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  // returns a new game of the given size, from the pool if one is ready and
+  // built on the calling thread otherwise; either way the pool is refilled
+  LightEmAll take(int width, int height) {
+    Shelf shelf = this.shelf(width, height);
+    LightEmAll game = shelf.games.poll();
+    if (game != null) {
+      this.hits.incrementAndGet();
+    }
+    else {
+      this.misses.incrementAndGet();
+      game = this.make(width, height);
+    }
+    this.refill(shelf);
+    return game;
+  }
+
+  // Effect: starts filling the queue for the given size ahead of time
+  void warm(int width, int height) {
+    this.refill(this.shelf(width, height));
+  }
+
+  // returns the shelf of the given size, making it if needed
+  synchronized Shelf shelf(int width, int height) {
+    long key = ((long) width << 32) | (height & 0xFFFFFFFFL);
+    Shelf shelf = this.shelves.get(key);
+    if (shelf == null) {
+      shelf = new Shelf(width, height, this.capacity);
+      this.shelves.put(key, shelf);
+    }
+    return shelf;
+  }
+
+  // Effect: queues enough background builds to fill the given shelf
+  void refill(Shelf shelf) {
+    if (this.workers.isShutdown()) {
+      return;
+    }
+    synchronized (shelf) {
+      this.fill(shelf);
+    }
+  }
+
+  // Effect: queues the builds for refill, holding the shelf's lock
+  void fill(Shelf shelf) {
+    while (shelf.games.size() + shelf.pending.get() < this.capacity) {
+      shelf.pending.incrementAndGet();
+      this.workers.execute(new Runnable() {
+        public void run() {
+          try {
+            long start = System.nanoTime();
+            LightEmAll game = PuzzlePool.this.make(shelf.width, shelf.height);
+            PuzzlePool.this.refillNanos.addAndGet(System.nanoTime() - start);
+            PuzzlePool.this.refills.incrementAndGet();
+            shelf.games.offer(game);
+          }
+          finally {
+            shelf.pending.decrementAndGet();
+          }
+        }
+      });
+    }
+  }
+
+  // returns a freshly generated game of the given size
+  LightEmAll make(int width, int height) {
+    return new LightEmAll(width, height, new Random(this.seeds.getAndIncrement()), true);
+  }
+
+  // returns the number of games ready for the given size
+  int ready(int width, int height) {
+    return this.shelf(width, height).games.size();
+  }
+
+  // returns the share of takes served from the pool
+  double hitRate() {
+    long total = this.hits.get() + this.misses.get();
+    return total == 0 ? 0 : this.hits.get() / (double) total;
+  }
+
+  // returns the average time a background build took, in milliseconds
+  double averageRefillMillis() {
+    long count = this.refills.get();
+    return count == 0 ? 0 : this.refillNanos.get() / 1e6 / count;
+  }
+
+  // returns a one-line summary of the pool's stats
+  String stats() {
+    return "hits=" + this.hits.get() + " misses=" + this.misses.get()
+        + " refills=" + this.refills.get()
+        + String.format(" avgRefillMs=%.2f", this.averageRefillMillis());
+  }
+
+  // Effect: stops the workers, waiting up to the given time for builds in
+  // progress; returns whether they all finished
+  boolean shutdown(long millis) throws InterruptedException {
+    this.workers.shutdown();
+    return this.workers.awaitTermination(millis, TimeUnit.MILLISECONDS);
+  }
+}
+
+// the ready games of one board size
+class Shelf {
+  int width;
+  int height;
+  ArrayBlockingQueue<LightEmAll> games;
+  // builds queued or running for this shelf
+  AtomicInteger pending;
+
+  Shelf(int width, int height, int capacity) {
+    this.width = width;
+    this.height = height;
+    this.games = new ArrayBlockingQueue<LightEmAll>(capacity);
+    this.pending = new AtomicInteger();
+  }
+}
@@ -0,0 +1,110 @@
+// rates scrambled puzzles before they are served: whether their solution is
+// unique, and how hard they are to solve by reasoning. The solver is kept
+// and reused while boards stay the same size, so that rating a batch of
+// boards allocates little more than the ratings
+class PuzzleRater {
+  // solutions are counted up to this many by default, enough to tell
+  // whether a board's solution is unique
+  static final int CAP = 2;
+  // the most guesses spent on one board; boards that need more are rated
+  // hard without knowing whether they are unique
+  static final long BUDGET = 1000;
+
+  PuzzleSolver solver;
+
+  // returns the rating of the given scrambled board
+  Rating rate(Board board) {
+    return this.rate(board, CAP);
+  }
+
+  // returns the rating of the given scrambled board, counting its solutions
+  // up to the given cap
+  Rating rate(Board board, int cap) {
+    PuzzleSolver solver = this.solver;
+    if (solver == null || solver.width != board.width() || solver.height != board.height()) {
+      solver = new PuzzleSolver(board);
+      this.solver = solver;
+    }
+    solver.board = board;
+    solver.budget = BUDGET;
+    solver.init();
+    int given = this.decided();
+    boolean ok = solver.fixpoint() && solver.probe();
+    int forced = this.decided() - given;
+    int solutions = solver.explore(cap, ok);
+    return new Rating(solutions, solver.exhausted, forced, solver.probes, solver.rounds,
+        solver.branches, solver.maxDepth);
+  }
+
+  // returns the number of cells the solver has decided
+  int decided() {
+    int count = 0;
+    for (int cell = 0; cell < this.solver.cells; cell++) {
+      if (this.solver.decided(cell)) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
+
+// the uniqueness and difficulty of a puzzle
+class Rating {
+  static final int EASY = 0;
+  static final int MEDIUM = 1;
+  static final int HARD = 2;
+
+  // the number of solutions, up to the cap rated with, and whether the
+  // search ran out of guesses first, so that there may be more
+  int solutions;
+  boolean exhausted;
+  // cells decided by inference before any guess, not counting those with a
+  // single shape, like crosses
+  int forced;
+  // turns dropped by trying them, and the rounds of global rules and
+  // probing sweeps, which measure how deep the inference had to go
+  long probed;
+  int rounds;
+  // guesses made, and the deepest stack of guesses
+  long branches;
+  int depth;
+
+  Rating(int solutions, boolean exhausted, int forced, long probed, int rounds, long branches,
+      int depth) {
+    this.solutions = solutions;
+    this.exhausted = exhausted;
+    this.forced = forced;
+    this.probed = probed;
+    this.rounds = rounds;
+    this.branches = branches;
+    this.depth = depth;
+  }
+
+  // returns whether the puzzle is known to have exactly one solution
+  boolean isUnique() {
+    return this.solutions == 1 && !this.exhausted;
+  }
+
+  // returns EASY if the rules alone solve the puzzle, MEDIUM if turns had to
+  // be tried, and HARD if it took guessing
+  int level() {
+    if (this.branches > 0 || this.exhausted) {
+      return HARD;
+    }
+    else if (this.probed > 0) {
+      return MEDIUM;
+    }
+    else {
+      return EASY;
+    }
+  }
+
+  // returns a one-line summary of this rating
+  String summary() {
+    String[] levels = {"easy", "medium", "hard"};
+    return "solutions=" + this.solutions + (this.exhausted ? "+" : "")
+        + " level=" + levels[this.level()] + " forced=" + this.forced
+        + " probed=" + this.probed + " rounds=" + this.rounds + " branches=" + this.branches
+        + " depth=" + this.depth;
+  }
+}
@@ -0,0 +1,749 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// finds the rotation of every piece of a scrambled board that lights the
+// whole board. Every cell has a domain: a 4-bit set of the clockwise turns
+// (0 to 3) that are still possible for it, with turns that give the same
+// shape as a smaller turn left out. Domains shrink by arc consistency
+// (no wire may leave the board, and both ends of an edge must agree), by
+// global rules (in tree mode no cycle may close, and an edge the board
+// would fall apart without must be wired), and by trying each remaining turn
+// and dropping those that fail at once. The solver only guesses when nothing
+// more can be inferred, undoing guesses through a trail of the domains they
+// changed
+class PuzzleSolver {
+  // ROTATED[mask][k] is mask turned clockwise k times
+  static final int[][] ROTATED = new int[16][4];
+  // UNION[mask][domain] is the wires any allowed turn of mask has, and
+  // INTER[mask][domain] the wires every allowed turn has
+  static final int[][] UNION = new int[16][16];
+  static final int[][] INTER = new int[16][16];
+
+  static {
+    for (int mask = 0; mask < 16; mask++) {
+      int m = mask;
+      for (int k = 0; k < 4; k++) {
+        ROTATED[mask][k] = m;
+        m = Board.rotate(m);
+      }
+      for (int domain = 0; domain < 16; domain++) {
+        int union = 0;
+        int inter = 0xF;
+        for (int k = 0; k < 4; k++) {
+          if ((domain & (1 << k)) != 0) {
+            union |= ROTATED[mask][k];
+            inter &= ROTATED[mask][k];
+          }
+        }
+        UNION[mask][domain] = union;
+        INTER[mask][domain] = domain == 0 ? 0 : inter;
+      }
+    }
+  }
+
+  // how far back in the trail pick looks for a cell near the last changes
+  static final int RECENT = 64;
+  // the most cells check searches from one changed cell
+  static final int POCKET = 64;
+
+  Board board;
+  int width;
+  int height;
+  int cells;
+  // whether the solution must be a spanning tree, as Kruskal boards are,
+  // rather than any wiring that connects every cell
+  boolean tree;
+  int[] base;
+  byte[] domain;
+  // domains changed since the start, so that guesses can be undone
+  int[] trailCell;
+  byte[] trailDomain;
+  int trailSize;
+  IntRing queue;
+  boolean[] queued;
+  IntUnionFind uf;
+  // the depth-first search for bridges: the visit order and low link of
+  // every cell, the direction back to its parent, the next direction to
+  // try, the path from the first cell, and the bridges found, each as the
+  // cell below it
+  int[] order;
+  int[] low;
+  int[] from;
+  int[] nextDir;
+  int[] path;
+  int[] bridge;
+  // marks for check, which bumps a counter instead of clearing them: the
+  // cells searched, the edges joined, and the overlay of joined groups
+  int searches;
+  int[] seen;
+  int stamp;
+  int[] edgeSeen;
+  int[] joined;
+  int[] joinedStamp;
+  // the search stack: the cell guessed at each depth, the turns not yet
+  // tried there, the trail size before the guess, and where pick's scan
+  // stopped
+  int[] stackCell;
+  int[] stackOptions;
+  int[] stackMark;
+  int[] stackScan;
+  int scan;
+  // the turns of the first solution found
+  byte[] solution;
+  // set by ParallelSolver: the only cells to guess, or null for all of
+  // them, all within [first, last); a flag that stops the search; and the turns known to fail from
+  // the starting domains, shared between searches, which search adds to
+  // when it starts from the shared domains itself
+  boolean[] region;
+  int first;
+  int last;
+  AtomicBoolean cancel;
+  AtomicIntegerArray refuted;
+  boolean fromRoot;
+  // the most guesses a search may make before giving up, and whether the
+  // last search gave up
+  long budget = Long.MAX_VALUE;
+  boolean exhausted;
+
+  // statistics of the last solve
+  int solutions;
+  long branches;
+  long backtracks;
+  long revisions;
+  long probes;
+  int maxDepth;
+  // the rounds of global rules and probing sweeps run
+  int rounds;
+
+  PuzzleSolver(Board board, boolean tree) {
+    this.board = board;
+    this.width = board.width();
+    this.height = board.height();
+    this.cells = board.cells();
+    this.tree = tree;
+    this.base = new int[this.cells];
+    this.domain = new byte[this.cells];
+    this.trailCell = new int[4 * this.cells];
+    this.trailDomain = new byte[4 * this.cells];
+    this.queue = new IntRing(this.cells);
+    this.queued = new boolean[this.cells];
+    this.uf = new IntUnionFind(this.cells);
+    this.order = new int[this.cells];
+    this.low = new int[this.cells];
+    this.from = new int[this.cells];
+    this.nextDir = new int[this.cells];
+    this.path = new int[this.cells];
+    this.bridge = new int[this.cells];
+    this.seen = new int[this.cells];
+    this.edgeSeen = new int[2 * this.cells];
+    this.joined = new int[this.cells];
+    this.joinedStamp = new int[this.cells];
+    this.stackCell = new int[this.cells];
+    this.stackOptions = new int[this.cells];
+    this.stackMark = new int[this.cells];
+    this.stackScan = new int[this.cells];
+  }
+
+  PuzzleSolver(Board board) {
+    this(board, true);
+  }
+
+  // returns whether the board can be solved, keeping the first solution
+  boolean solve() {
+    return this.count(1) > 0;
+  }
+
+  // returns the number of solutions of the board, counting no further than
+  // the given limit, and keeps the first solution found
+  int count(int limit) {
+    this.init();
+    return this.search(limit);
+  }
+
+  // returns the number of solutions reachable from the current domains,
+  // counting no further than the given limit. The full global rules and
+  // probing only run before the first guess; after a guess only propagate
+  // and the bounded checks run, and complete verifies every finished board
+  int search(int limit) {
+    return this.explore(limit, this.fixpoint() && this.probe());
+  }
+
+  // returns the number of solutions reachable by guessing from the current
+  // domains, which are consistent if ok is true and have failed otherwise,
+  // counting no further than the given limit. With a region, a solution is
+  // any way of deciding the region, and is left in the domains instead of
+  // being saved
+  int explore(int limit, boolean ok) {
+    int depth = 0;
+    while (true) {
+      if (ok) {
+        int cell = this.pick(depth);
+        if (cell == -1) {
+          if (this.region != null || this.complete()) {
+            this.solutions++;
+            if (this.solutions == 1 && this.region == null) {
+              this.saveSolution();
+            }
+            if (this.solutions >= limit) {
+              return this.solutions;
+            }
+          }
+        }
+        else {
+          this.stackScan[depth] = this.scan;
+          this.stackCell[depth] = cell;
+          this.stackOptions[depth] = this.domain[cell];
+          this.stackMark[depth] = this.trailSize;
+          depth++;
+          this.maxDepth = Math.max(this.maxDepth, depth);
+        }
+      }
+      // try the next untried turn, backing up as far as needed
+      ok = false;
+      while (!ok && depth > 0) {
+        if (this.cancel != null && this.cancel.get()) {
+          return this.solutions;
+        }
+        if (this.branches >= this.budget) {
+          this.exhausted = true;
+          return this.solutions;
+        }
+        int top = depth - 1;
+        this.undo(this.stackMark[top]);
+        int options = this.stackOptions[top];
+        int tried = this.domain[this.stackCell[top]] & ~options;
+        if (top == 0 && this.fromRoot && this.solutions == 0 && tried != 0) {
+          refute(this.refuted, this.stackCell[0], tried);
+        }
+        if (this.refuted != null) {
+          options &= ~this.refuted.get(this.stackCell[top]);
+        }
+        if (options == 0) {
+          depth--;
+          this.backtracks++;
+        }
+        else {
+          int bit = options & -options;
+          this.stackOptions[top] = options & ~bit;
+          this.branches++;
+          this.restrict(this.stackCell[top], bit);
+          ok = this.propagate() && this.check(this.stackMark[top]);
+        }
+      }
+      if (!ok) {
+        return this.solutions;
+      }
+    }
+  }
+
+  // Effect: adds the given turns of the given cell to the shared refuted ones
+  static void refute(AtomicIntegerArray refuted, int cell, int turns) {
+    int old = refuted.get(cell);
+    while ((old | turns) != old && !refuted.compareAndSet(cell, old, old | turns)) {
+      old = refuted.get(cell);
+    }
+  }
+
+  // Effect: replaces the domains and the groups of the last cycles pass
+  // with copies of the given ones, which must be for the same board, and
+  // forgets the trail
+  void load(byte[] domains, IntUnionFind groups) {
+    System.arraycopy(domains, 0, this.domain, 0, this.cells);
+    System.arraycopy(groups.parent, 0, this.uf.parent, 0, this.cells);
+    System.arraycopy(groups.size, 0, this.uf.size, 0, this.cells);
+    this.trailSize = 0;
+    this.undo(0);
+  }
+
+  // Effect: drops the shared refuted turns from the domains and propagates;
+  // returns false on a wipeout
+  boolean dropRefuted() {
+    for (int cell = 0; cell < this.cells; cell++) {
+      int turns = this.refuted.get(cell);
+      if (turns != 0 && !this.restrict(cell, this.domain[cell] & ~turns)) {
+        return false;
+      }
+    }
+    return this.propagate();
+  }
+
+  // Effect: sets every domain to the distinct turns of its piece
+  void init() {
+    this.trailSize = 0;
+    this.solutions = 0;
+    this.branches = 0;
+    this.backtracks = 0;
+    this.revisions = 0;
+    this.probes = 0;
+    this.rounds = 0;
+    this.exhausted = false;
+    this.maxDepth = 0;
+    this.solution = null;
+    this.first = 0;
+    this.last = this.cells;
+    this.queue.clear();
+    for (int cell = 0; cell < this.cells; cell++) {
+      int mask = this.board.connections(cell);
+      int dom = 1;
+      for (int k = 1; k < 4; k++) {
+        boolean fresh = true;
+        for (int j = 0; j < k; j++) {
+          fresh = fresh && ROTATED[mask][k] != ROTATED[mask][j];
+        }
+        if (fresh) {
+          dom |= 1 << k;
+        }
+      }
+      this.base[cell] = mask;
+      this.domain[cell] = (byte) dom;
+      this.queued[cell] = true;
+      this.queue.add(cell);
+    }
+  }
+
+  // returns the wires the given cell might still have
+  int union(int cell) {
+    return UNION[this.base[cell]][this.domain[cell]];
+  }
+
+  // returns the wires the given cell has whichever turn it takes
+  int inter(int cell) {
+    return INTER[this.base[cell]][this.domain[cell]];
+  }
+
+  // returns whether the given cell's turn is decided
+  boolean decided(int cell) {
+    int dom = this.domain[cell];
+    return (dom & (dom - 1)) == 0;
+  }
+
+  // Effect: shrinks the given cell's domain to the given turns, recording
+  // the old one and queueing the cell and its neighbors; returns false if
+  // nothing is left
+  boolean restrict(int cell, int dom) {
+    int old = this.domain[cell];
+    dom &= old;
+    if (dom == old) {
+      return true;
+    }
+    this.set(cell, dom);
+    this.enqueue(cell);
+    this.enqueueNeighbors(cell);
+    return dom != 0;
+  }
+
+  // Effect: queues the given cell for propagate unless it already is
+  void enqueue(int cell) {
+    if (!this.queued[cell]) {
+      this.queued[cell] = true;
+      this.queue.add(cell);
+    }
+  }
+
+  // Effect: queues the neighbors of the given cell
+  void enqueueNeighbors(int cell) {
+    for (int dir = Board.TOP; dir <= Board.LEFT; dir <<= 1) {
+      int next = this.board.neighbor(cell, dir);
+      if (next != -1) {
+        this.enqueue(next);
+      }
+    }
+  }
+
+  // Effect: sets the given cell's domain, recording the old one
+  void set(int cell, int dom) {
+    this.trailCell[this.trailSize] = cell;
+    this.trailDomain[this.trailSize] = this.domain[cell];
+    this.trailSize++;
+    this.domain[cell] = (byte) dom;
+  }
+
+  // Effect: keeps only the turns of the given cell that have the given wire
+  // on or off; returns false if nothing is left
+  boolean force(int cell, int dir, boolean on) {
+    int keep = 0;
+    int dom = this.domain[cell];
+    for (int k = 0; k < 4; k++) {
+      if ((dom & (1 << k)) != 0 && ((ROTATED[this.base[cell]][k] & dir) != 0) == on) {
+        keep |= 1 << k;
+      }
+    }
+    return this.restrict(cell, keep);
+  }
+
+  // Effect: puts back every domain changed after the given trail size
+  void undo(int mark) {
+    while (this.trailSize > mark) {
+      this.trailSize--;
+      this.domain[this.trailCell[this.trailSize]] = this.trailDomain[this.trailSize];
+    }
+    while (!this.queue.isEmpty()) {
+      this.queued[this.queue.remove()] = false;
+    }
+  }
+
+  // Effect: alternates local and global inference until neither shrinks a
+  // domain; returns false if some domain became empty
+  boolean fixpoint() {
+    while (true) {
+      if (!this.propagate()) {
+        return false;
+      }
+      this.rounds++;
+      int forced = this.global();
+      if (forced < 0) {
+        return false;
+      }
+      if (forced == 0) {
+        return true;
+      }
+    }
+  }
+
+  // Effect: makes every queued cell agree with its neighbors and the border,
+  // queueing the neighbors of cells that shrink; returns false on a wipeout
+  boolean propagate() {
+    while (!this.queue.isEmpty()) {
+      int cell = this.queue.remove();
+      this.queued[cell] = false;
+      this.revisions++;
+      int mustHave = 0;
+      int mustLack = 0;
+      for (int dir = Board.TOP; dir <= Board.LEFT; dir <<= 1) {
+        int next = this.board.neighbor(cell, dir);
+        int back = Board.opposite(dir);
+        if (next == -1 || (this.union(next) & back) == 0) {
+          mustLack |= dir;
+        }
+        else if ((this.inter(next) & back) != 0) {
+          mustHave |= dir;
+        }
+      }
+      int old = this.domain[cell];
+      int keep = 0;
+      for (int k = 0; k < 4; k++) {
+        int shape = ROTATED[this.base[cell]][k];
+        if ((old & (1 << k)) != 0 && (shape & mustHave) == mustHave
+            && (shape & mustLack) == 0) {
+          keep |= 1 << k;
+        }
+      }
+      if (keep != old) {
+        if (keep == 0) {
+          return false;
+        }
+        this.set(cell, keep);
+        this.enqueueNeighbors(cell);
+      }
+    }
+    return true;
+  }
+
+  // Effect: runs the global rules, cycles first since they are cheaper;
+  // returns the number of edges forced, or -1 on a contradiction
+  int global() {
+    if (this.tree) {
+      int forced = this.cycles();
+      if (forced != 0) {
+        return forced;
+      }
+    }
+    return this.bridges();
+  }
+
+  // Effect: joins the cells linked by edges every remaining turn agrees on
+  // and cuts every undecided edge inside one of the groups, which would
+  // close a cycle; returns the number of edges cut, or -1 if the linked
+  // edges already have a cycle
+  int cycles() {
+    IntUnionFind uf = this.uf;
+    for (int cell = 0; cell < this.cells; cell++) {
+      uf.parent[cell] = cell;
+      uf.size[cell] = 1;
+    }
+    for (int cell = 0; cell < this.cells; cell++) {
+      int inter = this.inter(cell);
+      for (int dir = Board.RIGHT; dir <= Board.BOTTOM; dir <<= 1) {
+        if ((inter & dir) != 0 && !uf.union(cell, this.board.neighbor(cell, dir))) {
+          return -1;
+        }
+      }
+    }
+    int forced = 0;
+    for (int cell = 0; cell < this.cells; cell++) {
+      int open = this.union(cell) & ~this.inter(cell);
+      for (int dir = Board.RIGHT; dir <= Board.BOTTOM; dir <<= 1) {
+        int next = this.board.neighbor(cell, dir);
+        if ((open & dir) != 0 && uf.find(cell) == uf.find(next)) {
+          forced++;
+          if (!this.force(cell, dir, false) || !this.force(next, Board.opposite(dir), false)) {
+            return -1;
+          }
+        }
+      }
+    }
+    return forced;
+  }
+
+  // Effect: finds the bridges of the graph of edges some remaining turn
+  // allows, with an iterative depth-first search keeping Tarjan's low links,
+  // and forces every undecided bridge on, since the board falls apart
+  // without it; returns the number of edges forced, or -1 if that graph is
+  // already disconnected
+  int bridges() {
+    int time = 0;
+    int top = 0;
+    int found = 0;
+    Arrays.fill(this.order, 0);
+    this.order[0] = ++time;
+    this.low[0] = time;
+    this.from[0] = 0;
+    this.nextDir[0] = 0;
+    this.path[top++] = 0;
+    while (top > 0) {
+      int cell = this.path[top - 1];
+      if (this.nextDir[cell] < 4) {
+        int dir = 1 << this.nextDir[cell]++;
+        if (dir != this.from[cell] && (this.union(cell) & dir) != 0) {
+          int next = this.board.neighbor(cell, dir);
+          if (this.order[next] == 0) {
+            this.order[next] = ++time;
+            this.low[next] = time;
+            this.from[next] = Board.opposite(dir);
+            this.nextDir[next] = 0;
+            this.path[top++] = next;
+          }
+          else {
+            this.low[cell] = Math.min(this.low[cell], this.order[next]);
+          }
+        }
+      }
+      else {
+        top--;
+        if (top > 0) {
+          int parent = this.path[top - 1];
+          this.low[parent] = Math.min(this.low[parent], this.low[cell]);
+          if (this.low[cell] > this.order[parent] && (this.inter(cell) & this.from[cell]) == 0) {
+            this.bridge[found++] = cell;
+          }
+        }
+      }
+    }
+    if (time < this.cells) {
+      return -1;
+    }
+    for (int i = 0; i < found; i++) {
+      int cell = this.bridge[i];
+      int dir = this.from[cell];
+      if (!this.force(cell, dir, true)
+          || !this.force(this.board.neighbor(cell, dir), Board.opposite(dir), true)) {
+        return -1;
+      }
+    }
+    return found;
+  }
+
+  // Effect: tries every remaining turn of every undecided cell and drops
+  // the turns that lead straight to a contradiction, sweeping the board
+  // until a sweep drops nothing; returns false if some cell has no turn left
+  boolean probe() {
+    boolean dropped = true;
+    while (dropped) {
+      dropped = false;
+      this.rounds++;
+      for (int cell = 0; cell < this.cells; cell++) {
+        int dom = this.domain[cell];
+        if ((dom & (dom - 1)) != 0) {
+          int keep = dom;
+          for (int k = 0; k < 4; k++) {
+            if ((dom & (1 << k)) != 0 && !this.tryTurn(cell, 1 << k)) {
+              keep &= ~(1 << k);
+            }
+          }
+          if (keep != dom) {
+            this.probes += Integer.bitCount(dom ^ keep);
+            dropped = true;
+            if (!this.restrict(cell, keep) || !this.propagate()) {
+              return false;
+            }
+          }
+        }
+      }
+      if (dropped && !this.fixpoint()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // returns whether giving the given cell the given turns survives local
+  // propagation and the bounded checks of check, leaving the domains as
+  // they were
+  boolean tryTurn(int cell, int dom) {
+    int mark = this.trailSize;
+    this.restrict(cell, dom);
+    boolean ok = this.propagate() && this.check(mark);
+    this.undo(mark);
+    return ok;
+  }
+
+  // returns false if the domains changed since the given trail size close a
+  // cycle out of edges every remaining turn agrees on, in tree mode, or cut
+  // off a small group of cells from the rest of the board. Cycles are found
+  // by joining the groups of the last full cycles pass along the new edges;
+  // groups are looked for by searches of at most POCKET cells from every
+  // changed cell. Both can miss contradictions but never report false ones
+  boolean check(int mark) {
+    this.stamp++;
+    if (this.tree) {
+      for (int i = mark; i < this.trailSize; i++) {
+        int cell = this.trailCell[i];
+        int fresh = this.inter(cell) & ~INTER[this.base[cell]][this.trailDomain[i]];
+        for (int dir = Board.TOP; dir <= Board.LEFT; dir <<= 1) {
+          if ((fresh & dir) != 0 && !this.join(cell, this.board.neighbor(cell, dir))) {
+            return false;
+          }
+        }
+      }
+    }
+    for (int i = mark; i < this.trailSize; i++) {
+      if (this.pocket(this.trailCell[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Effect: joins the groups of the given cells in the overlay on the last
+  // full cycles pass; returns false if they were already joined by a
+  // different edge
+  boolean join(int a, int b) {
+    int edge = Math.max(a, b) * 2 + (Math.abs(a - b) == 1 ? 1 : 0);
+    if (this.edgeSeen[edge] == this.stamp) {
+      return true;
+    }
+    this.edgeSeen[edge] = this.stamp;
+    int ra = this.overlay(this.uf.find(a));
+    int rb = this.overlay(this.uf.find(b));
+    if (ra == rb) {
+      return false;
+    }
+    this.joined[ra] = rb;
+    return true;
+  }
+
+  // returns the overlay root of the given group root
+  int overlay(int root) {
+    if (this.joinedStamp[root] != this.stamp) {
+      this.joinedStamp[root] = this.stamp;
+      this.joined[root] = root;
+    }
+    while (this.joined[root] != root) {
+      root = this.joined[root];
+    }
+    return root;
+  }
+
+  // returns whether the cells reachable from the given one over edges some
+  // remaining turn allows are fewer than POCKET and not the whole board
+  boolean pocket(int start) {
+    int head = 0;
+    int tail = 0;
+    this.searches++;
+    this.seen[start] = this.searches;
+    this.path[tail++] = start;
+    while (head < tail) {
+      int cell = this.path[head++];
+      int open = this.union(cell);
+      for (int dir = Board.TOP; dir <= Board.LEFT; dir <<= 1) {
+        if ((open & dir) != 0) {
+          int next = this.board.neighbor(cell, dir);
+          if (this.seen[next] != this.searches) {
+            if (tail == POCKET) {
+              return false;
+            }
+            this.seen[next] = this.searches;
+            this.path[tail++] = next;
+          }
+        }
+      }
+    }
+    return tail < this.cells;
+  }
+
+  // returns the next cell to guess at the given depth, or -1 if every cell
+  // that may be guessed is decided. Cells changed most recently come first,
+  // so the search finishes one tangle before starting on another and a
+  // wrong guess is found out before guesses elsewhere pile up on top of it.
+  // Otherwise the board is scanned from where the scan one level up stopped,
+  // as no cell before that can be guessed; the scan's end is left in scan
+  int pick(int depth) {
+    this.scan = depth == 0 ? this.first : this.stackScan[depth - 1];
+    int stop = Math.max(this.trailSize - RECENT, 0);
+    for (int i = this.trailSize - 1; i >= stop; i--) {
+      int cell = this.trailCell[i];
+      if (this.open(cell)) {
+        return cell;
+      }
+      for (int dir = Board.TOP; dir <= Board.LEFT; dir <<= 1) {
+        int next = this.board.neighbor(cell, dir);
+        if (next != -1 && this.open(next)) {
+          return next;
+        }
+      }
+    }
+    while (this.scan < this.last && !this.open(this.scan)) {
+      this.scan++;
+    }
+    return this.scan < this.last ? this.scan : -1;
+  }
+
+  // returns whether the given cell is undecided and may be guessed
+  boolean open(int cell) {
+    return !this.decided(cell) && (this.region == null || this.region[cell]);
+  }
+
+  // returns whether the decided domains wire up a connected board, and in
+  // tree mode one with exactly one edge fewer than it has cells
+  boolean complete() {
+    if (this.tree) {
+      int ends = 0;
+      for (int cell = 0; cell < this.cells; cell++) {
+        ends += Integer.bitCount(this.inter(cell));
+      }
+      if (ends != 2 * (this.cells - 1)) {
+        return false;
+      }
+    }
+    return this.bridges() == 0;
+  }
+
+  // Effect: remembers the turns of the current, fully decided, domains
+  void saveSolution() {
+    if (this.solution == null) {
+      this.solution = new byte[this.cells];
+    }
+    for (int cell = 0; cell < this.cells; cell++) {
+      this.solution[cell] = (byte) Integer.numberOfTrailingZeros(this.domain[cell]);
+    }
+  }
+
+  // returns the number of clockwise turns the given cell needs in the first
+  // solution found
+  int turns(int cell) {
+    return this.solution[cell];
+  }
+
+  // returns the solved connections of the given cell
+  int solvedMask(int cell) {
+    return ROTATED[this.base[cell]][this.solution[cell]];
+  }
+
+  // Effect: turns every piece of the given board into the first solution
+  void apply(Board board) {
+    for (int cell = 0; cell < this.cells; cell++) {
+      board.setConnections(cell, this.solvedMask(cell));
+    }
+  }
+}
@@ -0,0 +1,239 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Polygon;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import javax.imageio.ImageIO;
+
+import javalib.worldimages.*;
+
+// paints a board straight into one reusable BufferedImage by copying
+// pre-rasterized tile sprites, one for each connection mask and power state,
+// instead of building WorldImages. Needs no display, so it can also render
+// boards to PNG files in batch jobs. Every paint compares each cell's key
+// with the one painted, a single int a cell, and only draws the cells that
+// changed. It always shows the whole board at one size: a new size or
+// board needs a new renderer, and a viewport is drawn from tile images
+class RasterRenderer {
+  int size;
+  int width;
+  int height;
+  BufferedImage canvas;
+  int[] pixels;
+  // the pixels of every tile, indexed like TileImageCache: state * 16 + mask
+  int[][] sprites;
+  // what every cell looked like when last painted, or -1 if never painted
+  int[] painted;
+  // the canvas as a WorldImage for makeScene, updated tile by tile
+  ComputedPixelImage view;
+  int[] shown;
+  // every sprite as runs of one color along its rows, so that a tile is
+  // shown with a few fills instead of a call for every pixel: run i starts
+  // at pixel runs[key][2 * i] of the sprite and is runs[key][2 * i + 1]
+  // pixels long, and is filled with runColors[key][i]
+  int[][] runs;
+  Color[][] runColors;
+
+  RasterRenderer(int width, int height, int size) {
+    this.size = size;
+    this.width = width;
+    this.height = height;
+    this.canvas = new BufferedImage(width * size, height * size, BufferedImage.TYPE_INT_RGB);
+    this.pixels = ((DataBufferInt) this.canvas.getRaster().getDataBuffer()).getData();
+    this.sprites = new int[48][];
+    for (int state = 0; state < 3; state++) {
+      for (int mask = 0; mask < 16; mask++) {
+        this.sprites[state * 16 + mask] = sprite(size, mask, state);
+      }
+    }
+    this.runs = new int[48][];
+    this.runColors = new Color[48][];
+    HashMap<Integer, Color> palette = new HashMap<Integer, Color>();
+    for (int key = 0; key < 48; key++) {
+      this.encodeRuns(key, palette);
+    }
+    this.painted = new int[width * height];
+    Arrays.fill(this.painted, -1);
+  }
+
+  // returns the sprite key of the given cell of the given board
+  static int key(Board board, int cell) {
+    int state;
+    if (board.isPowerStation(cell)) {
+      state = TileImageCache.STATION;
+    }
+    else if (board.isPowered(cell)) {
+      state = TileImageCache.POWERED;
+    }
+    else {
+      state = TileImageCache.UNPOWERED;
+    }
+    return state * 16 + board.connections(cell);
+  }
+
+  // rasterizes the tile with the given connections in the given state,
+  // laid out like GamePiece.tileImage
+  static int[] sprite(int size, int mask, int state) {
+    int wire = TileImageCache.WIRE_WIDTH;
+    int half = (size + 1) / 2;
+    int lo = (size - wire) / 2;
+    BufferedImage tile = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = tile.createGraphics();
+    g.setColor(Color.DARK_GRAY);
+    g.fillRect(0, 0, size, size);
+    g.setColor(state == TileImageCache.UNPOWERED ? Color.LIGHT_GRAY : Color.yellow);
+    g.fillRect(lo, lo, wire, wire);
+    if ((mask & Board.TOP) != 0) {
+      g.fillRect(lo, 0, wire, half);
+    }
+    if ((mask & Board.RIGHT) != 0) {
+      g.fillRect(size - half, lo, half, wire);
+    }
+    if ((mask & Board.BOTTOM) != 0) {
+      g.fillRect(lo, size - half, wire, half);
+    }
+    if ((mask & Board.LEFT) != 0) {
+      g.fillRect(0, lo, half, wire);
+    }
+    if (state == TileImageCache.STATION) {
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+      Polygon star = star(size / 2.0, size / 2.0, size / 3.0, 7);
+      g.setColor(new Color(0, 255, 255));
+      g.fillPolygon(star);
+      g.setColor(new Color(255, 128, 0));
+      g.drawPolygon(star);
+    }
+    g.setColor(Color.black);
+    g.setStroke(new BasicStroke(1));
+    g.drawRect(0, 0, size - 1, size - 1);
+    g.dispose();
+    return tile.getRGB(0, 0, size, size, null, 0, size);
+  }
+
+  // Effect: splits the sprite with the given key into runs of one color
+  // along its rows, sharing one Color for every pixel value
+  void encodeRuns(int key, HashMap<Integer, Color> palette) {
+    int[] sprite = this.sprites[key];
+    int size = this.size;
+    int[] runs = new int[2 * sprite.length];
+    Color[] colors = new Color[sprite.length];
+    int n = 0;
+    for (int row = 0; row < size; row++) {
+      int start = row * size;
+      int end = start + size;
+      for (int i = start + 1; i <= end; i++) {
+        if (i == end || sprite[i] != sprite[start]) {
+          runs[2 * n] = start;
+          runs[2 * n + 1] = i - start;
+          colors[n] = palette.computeIfAbsent(sprite[start] & 0xFFFFFF, Color::new);
+          n++;
+          start = i;
+        }
+      }
+    }
+    this.runs[key] = Arrays.copyOf(runs, 2 * n);
+    this.runColors[key] = Arrays.copyOf(colors, n);
+  }
+
+  // returns a star with the given number of points around the given center
+  static Polygon star(double x, double y, double radius, int points) {
+    Polygon star = new Polygon();
+    for (int i = 0; i < 2 * points; i++) {
+      double r = i % 2 == 0 ? radius : radius / 2;
+      double angle = Math.PI * i / points - Math.PI / 2;
+      star.addPoint((int) Math.round(x + r * Math.cos(angle)),
+          (int) Math.round(y + r * Math.sin(angle)));
+    }
+    return star;
+  }
+
+  // Effect: paints every cell of the given board that changed since it was
+  // last painted; returns the number of cells painted
+  int paint(Board board) {
+    int count = 0;
+    for (int cell = 0; cell < this.painted.length; cell++) {
+      int key = key(board, cell);
+      if (this.painted[cell] != key) {
+        this.paintCell(cell, key);
+        count++;
+      }
+    }
+    return count;
+  }
+
+  // Effect: copies the sprite with the given key onto the given cell
+  void paintCell(int cell, int key) {
+    int[] sprite = this.sprites[key];
+    int size = this.size;
+    int stride = this.width * size;
+    int x = (cell / this.height) * size;
+    int y = (cell % this.height) * size;
+    for (int row = 0; row < size; row++) {
+      System.arraycopy(sprite, row * size, this.pixels, (y + row) * stride + x, size);
+    }
+    this.painted[cell] = key;
+  }
+
+  // returns the canvas as a WorldImage for makeScene, after painting the
+  // given board; only tiles that changed since the last call are copied
+  WorldImage toWorldImage(Board board) {
+    this.paint(board);
+    if (this.view == null) {
+      this.view = new ComputedPixelImage(this.width * this.size, this.height * this.size);
+      this.shown = new int[this.painted.length];
+      Arrays.fill(this.shown, -1);
+    }
+    int size = this.size;
+    for (int cell = 0; cell < this.painted.length; cell++) {
+      int key = this.painted[cell];
+      if (this.shown[cell] != key) {
+        int x0 = (cell / this.height) * size;
+        int y0 = (cell % this.height) * size;
+        int[] runs = this.runs[key];
+        Color[] colors = this.runColors[key];
+        for (int i = 0; i < colors.length; i++) {
+          int start = runs[2 * i];
+          this.view.setPixels(x0 + start % size, y0 + start / size, runs[2 * i + 1], 1,
+              colors[i]);
+        }
+        this.shown[cell] = key;
+      }
+    }
+    return this.view;
+  }
+
+  // Effect: paints the given board and writes it to the given PNG file
+  void writePng(Board board, File file) throws IOException {
+    this.paint(board);
+    ImageIO.write(this.canvas, "png", file);
+  }
+
+  // Effect: renders the given board with the given tile size to the given
+  // PNG file, without needing a display
+  static void renderToPng(Board board, int size, File file) throws IOException {
+    renderToPng(board, size, file, null);
+  }
+
+  // Effect: renders the given board with the given tile size to the given
+  // PNG file with the given renderer if it has that board size and tile
+  // size, and with a new one otherwise; returns the renderer used. Batch
+  // jobs pass back the one returned, so that the sprites and the canvas
+  // are made once for every board of a size rather than once a board
+  static RasterRenderer renderToPng(Board board, int size, File file, RasterRenderer reuse)
+      throws IOException {
+    RasterRenderer renderer = reuse;
+    if (renderer == null || renderer.width != board.width()
+        || renderer.height != board.height() || renderer.size != size) {
+      renderer = new RasterRenderer(board.width(), board.height(), size);
+    }
+    renderer.writePng(board, file);
+    return renderer;
+  }
+}
@@ -0,0 +1,54 @@
+import java.awt.Color;
+
+import javalib.worldimages.*;
+
+// builds each tile image once per connection mask and power state, so that
+// drawing a board reuses the same 48 images instead of building a new tree
+// of images for every piece on every frame
+class TileImageCache {
+  static final int WIRE_WIDTH = 10;
+  static final int UNPOWERED = 0;
+  static final int POWERED = 1;
+  static final int STATION = 2;
+
+  int size;
+  // indexed by state * 16 + mask
+  WorldImage[] images;
+
+  TileImageCache(int size) {
+    this.size = size;
+    this.images = new WorldImage[48];
+  }
+
+  // returns the state a piece is drawn in
+  static int state(GamePiece piece) {
+    if (piece.powerStation) {
+      return STATION;
+    }
+    else if (piece.isPowered()) {
+      return POWERED;
+    }
+    else {
+      return UNPOWERED;
+    }
+  }
+
+  // returns the image of the given piece
+  WorldImage image(GamePiece piece) {
+    return this.image(piece.connections(), state(piece));
+  }
+
+  // returns the image of a tile with the given connections in the given state
+  WorldImage image(int mask, int state) {
+    int key = state * 16 + mask;
+    WorldImage image = this.images[key];
+    if (image == null) {
+      GamePiece shape = new GamePiece(0, 0);
+      shape.setConnections(mask);
+      Color wireColor = state == UNPOWERED ? Color.LIGHT_GRAY : Color.yellow;
+      image = shape.tileImage(this.size, WIRE_WIDTH, wireColor, state == STATION);
+      this.images[key] = image;
+    }
+    return image;
+  }
+}